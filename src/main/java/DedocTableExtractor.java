@@ -13,17 +13,22 @@ import exceptions.EmptyArgumentException;
 import extractors.BlockComposer;
 import extractors.ExtractionManager;
 import model.Document;
+import model.DocumentSession;
 import model.Page;
 import model.table.Table;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
+import pdreaders.RulingMode;
+import pdreaders.TextDetail;
+import server.ExtractionServer;
+import utils.BatchExecutor;
 import utils.Config;
+import utils.PageExecutor;
 import writers.HtmlTableWriter;
 import writers.JaksonWriter;
 import writers.JsonDocumentWriter;
@@ -37,7 +42,7 @@ public class DedocTableExtractor {
                 "org.apache.commons.logging.impl.NoOpLog");
     }
     // CLI params
-    @Option(name = "-i", aliases = {"--input"}, required = true, metaVar = "PATH", usage = "specify a file")
+    @Option(name = "-i", aliases = {"--input"}, metaVar = "PATH", usage = "specify a file")
     private String inArg;
     private File inputFile;
     private Path inputPath;
@@ -64,6 +69,47 @@ public class DedocTableExtractor {
     @Option(name = "-tmp", aliases = {"--temporary"}, usage = "temporary directory")
     private String tmpDir = "";
 
+    @Option(name = "-t", aliases = {"--threads"}, metaVar = "N", usage = "Number of threads extracting pages in parallel (0 - one per processor)")
+    private int threads = 1;
+
+    @Option(name = "-rm", aliases = {"--ruling-mode"}, usage = "Visible ruling detection: RASTER renders pages, VECTOR reads paths only, AUTO renders only pages with images and no vector rulings")
+    private RulingMode rulingMode = RulingMode.RASTER;
+
+    @Option(name = "-c", aliases = {"--compact"}, usage = "Write the JSON output without indentation")
+    private boolean compact = false;
+
+    @Option(name = "-s", aliases = {"--stream"}, usage = "Extract, compose and write the pages one at a time instead of keeping the whole document (not with debug output). The fonts and images of a page are released with it, the parsed PDF objects stay in memory until the document is done, so the heap still grows with the number of pages")
+    private boolean stream = false;
+
+    @Option(name = "-w", aliases = {"--window"}, metaVar = "N", usage = "Maximum number of pages in progress when streaming")
+    private int pageWindow = 4;
+
+    @Option(name = "-hc", aliases = {"--heap-ceiling"}, metaVar = "RATIO", usage = "Fraction of the maximum heap above which streaming waits for the pages in progress")
+    private double heapCeiling = 0.75;
+
+    @Option(name = "-mm", aliases = {"--memory-mapped"}, usage = "Read the PDF files through memory-mapped files")
+    private boolean memoryMapped = false;
+
+    @Option(name = "-mem", aliases = {"--max-memory"}, metaVar = "MB", usage = "Megabytes of decoded PDF streams kept on the heap per document, the rest goes to scratch files in the temporary directory (negative - no limit)")
+    private long maxMainMemoryMB = -1;
+
+    @Option(name = "-bt", aliases = {"--batch-threads"}, metaVar = "N", usage = "Number of documents of an input directory extracted in parallel (0 - one per processor)")
+    private int batchThreads = 0;
+
+    @Option(name = "-to", aliases = {"--timeout"}, metaVar = "SECONDS", usage = "Time limit for a document of an input directory (0 - no limit). At most as many timed out documents as batch threads keep running in the background, further ones hold their thread until they stop")
+    private long timeout = 0;
+
+    @Option(name = "-port", aliases = {"--server-port"}, metaVar = "PORT", usage = "Serve extractions over HTTP on the local port instead of extracting the input")
+    private int serverPort = 0;
+
+    @Option(name = "-st", aliases = {"--server-threads"}, metaVar = "N", usage = "Number of documents extracted at once by the server (0 - one per processor)")
+    private int serverThreads = 0;
+
+    @Option(name = "-sq", aliases = {"--server-queue"}, metaVar = "N", usage = "Number of documents waiting for the server, more requests are refused")
+    private int serverQueue = 16;
+
+    private Config config;
+
     @Option(name = "-?", aliases = {"--help"}, usage = "Show this message")
     private boolean help = false;
 
@@ -75,7 +121,6 @@ public class DedocTableExtractor {
 
     public void run(String[] args) {
 
-        Config config = new Config();
         Map<Integer, Rectangle2D.Float> GOSTFrames = new HashMap<>();
 
         CmdLineParser parser = new CmdLineParser(this);
@@ -87,11 +132,29 @@ public class DedocTableExtractor {
                 System.exit(0);
             }
 
+            Config.Builder configBuilder = new Config.Builder()
+                    .setThreads(threads)
+                    .setRulingMode(rulingMode)
+                    .setCompactJson(compact)
+                    .setPageWindow(pageWindow)
+                    .setHeapCeiling(heapCeiling)
+                    .setMemoryMapped(memoryMapped)
+                    .setMaxMainMemoryMB(maxMainMemoryMB);
+
+            if (serverPort > 0) {
+                serve(configBuilder);
+                return;
+            }
+
             throwIfEmpty(inArg);
 
             if (!rf.isEmpty()){
-                Config.removeFrame = true;
-                Config.pathToGOSTJson = rf;
+                configBuilder.setRemoveFrame(true).setPathToGOSTJson(rf);
+            }
+
+            if (debug) {
+                // The debug output draws the original chunks
+                configBuilder.setTextDetails(EnumSet.of(TextDetail.CHUNKS));
             }
 
             inputFile = new File(inArg);
@@ -107,66 +170,47 @@ public class DedocTableExtractor {
             outputPath = outputFile.toPath();
 
             if (isEmptyArg(tmpDir)) {
-                Config.tmpDir = outputFile.getParent()+"/";
+                configBuilder.setTmpDir(outputFile.getParent()+"/");
             } else {
-                Config.tmpDir = tmpDir;
+                configBuilder.setTmpDir(tmpDir);
             }
+            config = configBuilder.createConfig();
 
-            File tmpDir = new File(Config.tmpDir);
+            File tmpDir = new File(config.getTmpDir());
             if (tmpDir.exists() && tmpDir.isDirectory()) {
             } else {
                 tmpDir.mkdir();
             }
 
             if (inputFile.isFile()) {
-                if (Config.removeFrame) {
-                    GOSTFrames = readGOSTJson(Config.pathToGOSTJson);
-                    Map<Integer, Rectangle2D> bboxes = new HashMap<>();
-                    PDDocument doc = Loader.loadPDF(inputFile);
-                    for (int i=0; i < doc.getPages().getCount(); i++){
-                        PDPage page = doc.getPage(i);
-                        Rectangle2D.Float rec = GOSTFrames.get(i);
-                        if (rec == null) continue;
-                        float w = (float) (rec.getWidth() * page.getCropBox().getWidth() );
-                        float h = (float) (rec.getHeight() * page.getCropBox().getHeight());
-                        float x = (float) (rec.getX() * page.getCropBox().getWidth());
-                        //float y = (float) (page.getCropBox().getHeight() - ((rec.getY() * page.getCropBox().getHeight()) + h));
-                        float y = (float) (rec.getY() * page.getCropBox().getHeight());
-                        Rectangle2D.Float newRec = new Rectangle2D.Float(x,y,w,h);
-                        bboxes.put(i, newRec);
-/*                        if (newRec != null) {
-                            page.setTrimBox(newRec);
-                            page.setCropBox(newRec);
-                            page.setMediaBox(newRec);
-                            page.setBleedBox(newRec);
-                            page.setArtBox(newRec);
-                        }*/
+                // The file is parsed once for the frames, the extraction and the debug output
+                try (DocumentSession session = DocumentSession.open(inputFile.toPath(), config)) {
+                    if (null == session) {
+                        throw new FileNotFoundException(inputFile.getPath());
                     }
-                    Config.bboxes = bboxes;
-/*                    File cropped = new File(Config.tmpDir+"/cropped_"+inputFile.getName());
-                    doc.save(cropped);
-                    doc.close();
-                    inputFile = cropped;*/
-                }
-                if (sPage != null && !sPage.isEmpty() && ePage != null && !ePage.isEmpty()) {
-                    startPage = Integer.parseInt(sPage);
-                    endPage = Integer.parseInt(ePage);
-                    extract(inputFile.toPath(), startPage - 1, endPage - 1, GOSTFrames);
-                } else {
-                    extract(inputFile.toPath(), GOSTFrames);
-                }
-            } else {
-                final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:**.{pdf,PDF}");
-                try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(inputPath, "*.pdf")) {
-                    for (Path file : directoryStream) {
-                        if (matcher.matches(file.getFileName())) {
-                            extract(file, GOSTFrames);
-                        }
+                    Config config = this.config;
+                    if (config.isRemoveFrame()) {
+                        GOSTFrames = readGOSTJson(config.getPathToGOSTJson());
+                        config = new Config.Builder(config)
+                                .setBBoxes(getFrameBoxes(session.getPDDocument(), GOSTFrames))
+                                .createConfig();
+                    }
+                    if (stream && !debug) {
+                        // Debug output draws the whole document, so it is only written without streaming
+                        boolean pageRange = sPage != null && !sPage.isEmpty() && ePage != null && !ePage.isEmpty();
+                        startPage = pageRange ? Integer.parseInt(sPage) - 1 : 0;
+                        endPage = pageRange ? Integer.parseInt(ePage) - 1 : Integer.MAX_VALUE;
+                        extractPageByPage(session, config, startPage, endPage, GOSTFrames, new File(config.getTmpDir() + "data.json"));
+                    } else if (sPage != null && !sPage.isEmpty() && ePage != null && !ePage.isEmpty()) {
+                        startPage = Integer.parseInt(sPage);
+                        endPage = Integer.parseInt(ePage);
+                        extract(session, config, startPage - 1, endPage - 1, GOSTFrames);
+                    } else {
+                        extract(session, config, GOSTFrames, new File(config.getTmpDir() + "data.json"));
                     }
                 }
-                catch (IOException | DirectoryIteratorException ex) {
-                    ex.printStackTrace();
-                }
+            } else {
+                extractDirectory();
             }
 
         } catch (CmdLineException | IOException e) {
@@ -202,48 +246,213 @@ public class DedocTableExtractor {
         return GOSTFrames;
     }
 
+    /**
+     * Scales the relative GOST frames to the crop boxes of the pages.
+     */
+    private Map<Integer, Rectangle2D> getFrameBoxes(PDDocument doc, Map<Integer, Rectangle2D.Float> GOSTFrames) {
+        Map<Integer, Rectangle2D> bboxes = new HashMap<>();
+        for (int i=0; i < doc.getPages().getCount(); i++){
+            PDPage page = doc.getPage(i);
+            Rectangle2D.Float rec = GOSTFrames.get(i);
+            if (rec == null) continue;
+            float w = (float) (rec.getWidth() * page.getCropBox().getWidth() );
+            float h = (float) (rec.getHeight() * page.getCropBox().getHeight());
+            float x = (float) (rec.getX() * page.getCropBox().getWidth());
+            //float y = (float) (page.getCropBox().getHeight() - ((rec.getY() * page.getCropBox().getHeight()) + h));
+            float y = (float) (rec.getY() * page.getCropBox().getHeight());
+            Rectangle2D.Float newRec = new Rectangle2D.Float(x,y,w,h);
+            bboxes.put(i, newRec);
+        }
+        return bboxes;
+    }
+
     public void extract(Path path, int startPage, int endPage, Map<Integer, Rectangle2D.Float> GOSTFrames) throws IOException, ParserConfigurationException, TransformerException {
+        try (DocumentSession session = DocumentSession.open(path, config)) {
+            if (null == session) {
+                throw new FileNotFoundException(path.toString());
+            }
+            extract(session, config, startPage, endPage, GOSTFrames);
+        }
+    }
 
-        Document document = null;
-        document = Document.load(path, startPage, endPage);
-        document.setBBoxes(GOSTFrames);
+    private void extract(DocumentSession session, Config config, int startPage, int endPage, Map<Integer, Rectangle2D.Float> GOSTFrames) throws IOException, ParserConfigurationException, TransformerException {
 
-        int lastPageIndex = document.getPageCnt();
-        if (startPage > lastPageIndex)
-            return;
-        startPage = startPage <= 0 ? 0: startPage;
-        endPage = endPage >= lastPageIndex ? lastPageIndex : endPage;
-        BlockComposer bc = new BlockComposer();
-        bc.compose(document, startPage, endPage);
+        try (Document document = Document.load(session, startPage, endPage, config)) {
+            document.setBBoxes(GOSTFrames);
 
-        ExtractionManager em = new ExtractionManager(document);
-        List<Table> tables = em.extract(startPage, endPage);
+            int lastPageIndex = document.getPageCnt();
+            if (startPage > lastPageIndex)
+                return;
+            startPage = startPage <= 0 ? 0: startPage;
+            endPage = endPage >= lastPageIndex ? lastPageIndex : endPage;
+            BlockComposer bc = new BlockComposer();
+            bc.compose(document, startPage, endPage);
 
-        printJSON(document);
+            ExtractionManager em = new ExtractionManager(document);
+            List<Table> tables = em.extract(startPage, endPage);
 
-        if (debug) {
-            writeTables(document);
-            drawDebug(document);
+            printJSON(document);
+
+            if (debug) {
+                writeTables(document);
+                drawDebug(document);
+            }
         }
     }
 
     public void extract(Path path, Map<Integer, Rectangle2D.Float> GOSTFrames) throws IOException, ParserConfigurationException, TransformerException {
-        Document document = null;
-        PDDocument pdDocument = Loader.loadPDF(path.toFile());
+        extract(path, GOSTFrames, new File(config.getTmpDir() + "data.json"));
+    }
+
+    private int extract(Path path, Map<Integer, Rectangle2D.Float> GOSTFrames, File json) throws IOException, ParserConfigurationException, TransformerException {
+        try (DocumentSession session = DocumentSession.open(path, config)) {
+            if (null == session) {
+                throw new FileNotFoundException(path.toString());
+            }
+            return extract(session, config, GOSTFrames, json);
+        }
+    }
+
+    /**
+     * Extracts the whole document into the JSON file and returns the number of extracted pages.
+     */
+    private int extract(DocumentSession session, Config config, Map<Integer, Rectangle2D.Float> GOSTFrames, File json) throws IOException, ParserConfigurationException, TransformerException {
+        try (OutputStream out = Files.newOutputStream(json.toPath())) {
+            return extract(session, config, 0, session.getPageCount() - 1, out);
+        }
+    }
+
+    private int extract(DocumentSession session, Config config, int startPage, int endPage, OutputStream json) throws IOException, ParserConfigurationException, TransformerException {
+        try (Document document = Document.load(session, startPage, endPage, config)) {
+            BlockComposer bc = new BlockComposer();
+            bc.compose(document);
+
+            ExtractionManager em = new ExtractionManager(document);
+            List<Table> tables = em.extract();
+
+            new JaksonWriter(document).write(json);
+
+            if (debug) {
+                drawDebug(document);
+                writeTables(document);
+            }
+            return document.getPages().size();
+        }
+    }
+
+    /**
+     * Starts the extraction server, which runs until the process is stopped. Every request writes its uploaded
+     * file and images to a directory of its own under the temporary directory, the system one by default, which
+     * is deleted after the response. Fonts, classes and compiled code stay loaded from one document to the next.
+     */
+    private void serve(Config.Builder configBuilder) throws IOException {
+        config = configBuilder
+                .setTmpDir(isEmptyArg(tmpDir) ? System.getProperty("java.io.tmpdir") + "/" : tmpDir)
+                .createConfig();
+        // Debug output needs an output directory per document, so the server does not write it
+        debug = false;
+        Path workDir = Files.createDirectories(Paths.get(config.getTmpDir()));
+
+        ExtractionServer server = new ExtractionServer("localhost", serverPort, PageExecutor.resolveThreads(serverThreads),
+                serverQueue, workDir, (file, requestDir, start, end, json) -> {
+                    Config requestConfig = new Config.Builder(config)
+                            .setTmpDir(requestDir.toString() + File.separator)
+                            .createConfig();
+                    try (DocumentSession session = DocumentSession.open(file, requestConfig)) {
+                        if (null == session) {
+                            throw new FileNotFoundException(file.toString());
+                        }
+                        if (stream) {
+                            return extractPageByPage(session, requestConfig, start, end, new HashMap<>(), json);
+                        }
+                        return extract(session, requestConfig, start, end, json);
+                    }
+                });
+        server.start();
+        System.out.println("Serving extractions on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort());
+    }
 
-        document = Document.load(path, 0, pdDocument.getPages().getCount() - 1);
+    /**
+     * Extracts every PDF file of the input directory into a JSON file of the same name in the output directory.
+     * Documents are extracted in parallel, a document failing or running over the timeout is reported in the
+     * summary and does not stop the others.
+     */
+    private void extractDirectory() throws IOException {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:**.{pdf,PDF}");
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(inputPath, "*.pdf")) {
+            for (Path file : directoryStream) {
+                if (matcher.matches(file.getFileName())) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+
+        long start = System.currentTimeMillis();
+        BatchExecutor executor = new BatchExecutor(batchThreads, timeout);
+        List<BatchExecutor.Result> results = executor.run(files,
+                file -> outputPath.resolve(FilenameUtils.getBaseName(file.getFileName().toString()) + ".json"),
+                (file, json) -> {
+                    if (stream && !debug) {
+                        return extractPageByPage(file, 0, Integer.MAX_VALUE, new HashMap<>(), json.toFile());
+                    }
+                    return extract(file, new HashMap<>(), json.toFile());
+                });
+        BatchExecutor.printSummary(results, System.currentTimeMillis() - start, System.out);
+    }
 
-        BlockComposer bc = new BlockComposer();
-        bc.compose(document);
+    /**
+     * Extracts, composes, detects the tables of and writes one page after another, so only the pages
+     * in progress are held in memory.
+     */
+    public void extractPageByPage(Path path, int startPage, int endPage, Map<Integer, Rectangle2D.Float> GOSTFrames) throws IOException {
+        extractPageByPage(path, startPage, endPage, GOSTFrames, new File(config.getTmpDir() + "data.json"));
+    }
 
-        ExtractionManager em = new ExtractionManager(document);
-        List<Table> tables = em.extract();
+    private int extractPageByPage(Path path, int startPage, int endPage, Map<Integer, Rectangle2D.Float> GOSTFrames,
+                                  File json) throws IOException {
+        try (DocumentSession session = DocumentSession.open(path, config)) {
+            if (null == session) {
+                return 0;
+            }
+            return extractPageByPage(session, config, startPage, endPage, GOSTFrames, json);
+        }
+    }
 
-        printJSON(document);
+    private int extractPageByPage(DocumentSession session, Config config, int startPage, int endPage,
+                                  Map<Integer, Rectangle2D.Float> GOSTFrames, File json) throws IOException {
+        try (OutputStream out = Files.newOutputStream(json.toPath())) {
+            return extractPageByPage(session, config, startPage, endPage, GOSTFrames, out);
+        }
+    }
 
-        if (debug) {
-            drawDebug(document);
-            writeTables(document);
+    /**
+     * A start page after the last one gives a document without pages.
+     */
+    private int extractPageByPage(DocumentSession session, Config config, int startPage, int endPage,
+                                  Map<Integer, Rectangle2D.Float> GOSTFrames, OutputStream json) throws IOException {
+        try (Document document = Document.open(session, startPage, endPage, config)) {
+            document.setBBoxes(GOSTFrames);
+
+            BlockComposer bc = new BlockComposer();
+            ExtractionManager em = new ExtractionManager(document);
+            int[] written = {0};
+
+            try (JaksonWriter jaksonWriter = new JaksonWriter(document)) {
+                jaksonWriter.open(json);
+                document.processPages(page -> {
+                    bc.compose(page);
+                    em.extract(page);
+                    return page;
+                }, page -> {
+                    jaksonWriter.writePage(page);
+                    written[0]++;
+                });
+                jaksonWriter.finish();
+            }
+            return written[0];
         }
     }
 
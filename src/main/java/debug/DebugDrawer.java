@@ -5,11 +5,14 @@ import extractors.bordered.Range;
 import model.*;
 import model.table.Cell;
 import model.table.Table;
-import org.apache.pdfbox.Loader;
+import utils.PdfLoader;
+import org.apache.pdfbox.multipdf.LayerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.*;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.io.*;
@@ -29,6 +32,8 @@ public class DebugDrawer {
     private Path debugDirectoryPath;
 
     private PDDocument recomposedDocument;
+    private PDDocument sourceDocument;
+    private boolean closeSourceDocument;
 
     private String chunkDirectoryName;
     private String charDirectoryName;
@@ -64,27 +69,66 @@ public class DebugDrawer {
     }
 
     public void drawBeforeRecomposing() throws IOException, ParserConfigurationException, TransformerException {
-        drawChunks();
-        //drawChars();
-        drawWords();
-        drawBlocks();
-        drawRulings();
-        drawBorderedTables();
-        drawProjections();
-        drawTextLines();
+        try {
+            drawChunks();
+            //drawChars();
+            drawWords();
+            drawBlocks();
+            drawRulings();
+            drawBorderedTables();
+            drawProjections();
+            drawTextLines();
+        } finally {
+            closeSourceDocument();
+        }
     }
 
+    /**
+     * Returns a new document to draw a layer on. The pages show the pages of the source as forms, so the source
+     * is parsed once for all the layers and is not changed by the drawing.
+     */
     private PDDocument getPDDocument() throws IOException {
-        File file = document.getSourceFile();
-        PDDocument pdDocument = Loader.loadPDF(file);
-
-        if (pdDocument.isEncrypted()) {
-            pdDocument.setAllSecurityToBeRemoved(true);
+        PDDocument source = getSourceDocument();
+        PDDocument pdDocument = new PDDocument();
+        LayerUtility layerUtility = new LayerUtility(pdDocument);
+
+        for (PDPage sourcePage: source.getPages()) {
+            PDFormXObject form = layerUtility.importPageAsForm(source, sourcePage);
+            PDRectangle box = form.getBBox();
+            PDPage page = new PDPage(new PDRectangle(box.getWidth(), box.getHeight()));
+            pdDocument.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(pdDocument, page)) {
+                contentStream.drawForm(form);
+            }
         }
 
         return pdDocument;
     }
 
+    private PDDocument getSourceDocument() throws IOException {
+        if (null == sourceDocument) {
+            PDDocument pdDocument = document.getPdDocument();
+            if (null == pdDocument || pdDocument.getDocument().isClosed()) {
+                // The document was loaded without a session, so its PDF is parsed here once
+                pdDocument = PdfLoader.load(document.getSourceFile(), document.getConfig());
+                closeSourceDocument = true;
+            }
+            if (pdDocument.isEncrypted()) {
+                pdDocument.setAllSecurityToBeRemoved(true);
+            }
+            sourceDocument = pdDocument;
+        }
+        return sourceDocument;
+    }
+
+    private void closeSourceDocument() throws IOException {
+        if (closeSourceDocument) {
+            sourceDocument.close();
+        }
+        sourceDocument = null;
+        closeSourceDocument = false;
+    }
+
     private void drawChunks() throws IOException {
         PDDocument pdDocument = getPDDocument();
         PageDrawer.Builder builder = new PageDrawer.Builder(pdDocument, chunkDrawStyle);
@@ -138,7 +182,6 @@ public class DebugDrawer {
     private void drawWords() throws IOException, ParserConfigurationException, TransformerException {
         PDDocument pdDocument = getPDDocument();
         PageDrawer.Builder builder = new PageDrawer.Builder(pdDocument, wordDrawStyle);
-        PDFRenderer pdfRenderer = new PDFRenderer(document.getPdDocument());
 
         for (Iterator<Page> pages = document.getPagesItrerator(); pages.hasNext(); ) {
             Page page = pages.next();
@@ -113,7 +113,6 @@ public abstract class AbstractTableExtractor {
         result.setStartOrder(startOrder);
         result.setEndOrder(endOrder);
 
-        result.updateTextLine();
         return result;
     }
 
@@ -153,8 +152,6 @@ public abstract class AbstractTableExtractor {
             startOrder = Math.min(startOrder, block.getStartOrder());
             endOrder = Math.max(endOrder, block.getEndOrder());
 
-            result.newTextLine(block);
-
             // Remove merged blocks except the first one from the page
             block.retract();
         }
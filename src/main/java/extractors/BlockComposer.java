@@ -7,11 +7,15 @@ import model.PDFFont;
 import model.Page;
 import model.TextChunk;
 import org.apache.commons.collections4.IteratorUtils;
+import utils.PageExecutor;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 public class BlockComposer {
 
@@ -53,21 +57,27 @@ public class BlockComposer {
 
     }
 
-    public void compose(Document document) {
-        for(Iterator<Page> pages = document.getPagesItrerator(); pages.hasNext();) {
-            Page page = pages.next();
-            compose(page);
-        }
+    public void compose(Document document) throws IOException {
+        compose(document, document.getPages());
     }
 
-    public void compose(Document document, int startPage, int endPage) {
+    public void compose(Document document, int startPage, int endPage) throws IOException {
+        List<Page> pages = new ArrayList<>();
         for (int i = startPage; i <= endPage; i++) {
-            Page page = document.getPage(i);
-            compose(page);
+            pages.add(document.getPage(i));
         }
+        compose(document, pages);
     }
 
-    private void compose(Page page) {
+    private void compose(Document document, List<Page> pages) throws IOException {
+        // Pages are composed independently, so they share the document worker pool
+        PageExecutor.invokeAll(pages, document.getExecutor(), page -> {
+            compose(page);
+            return page;
+        });
+    }
+
+    public void compose(Page page) {
         List<TextChunk> words = IteratorUtils.toList(page.getWords());
         determineWordCoherence(words); // Calculate coherence
         composeWords(page);
@@ -76,57 +86,15 @@ public class BlockComposer {
     }
 
     private void determineWordCoherence(List<TextChunk> words) {
-        final float maxLeftDeviation = 1f;
-
-        for (int i = 0; i < words.size(); i++) {
-            TextChunk currentWord = words.get(i);
-            int coherence = 0;
-            double minLeft = currentWord.getLeft() - maxLeftDeviation;
-            double maxLeft = currentWord.getLeft() + maxLeftDeviation;
-
-            for (int j = 0; j < words.size(); j++) {
-                if (j == i) continue;
-
-                TextChunk coherentWord = words.get(j);
-                double deviation = Math.abs(currentWord.getLeft() - coherentWord.getLeft());
-
-                if (deviation < maxLeftDeviation) {
-                    double tp  = 0f, bm  = 0f;
-
-                    if (currentWord.getBottom() < coherentWord.getTop()) {
-                        tp = currentWord.getBottom();
-                        bm = coherentWord.getTop();
-                    } else if (currentWord.getTop() > coherentWord.getBottom()) {
-                        tp = coherentWord.getBottom();
-                        bm = currentWord.getTop();
-                    }
-
-                    boolean noObstacleWords = true;
-                    for (int k = 0; k < words.size(); k++) {
-                        if (k == i || k == j) continue;
-                        TextChunk obstacleWord = words.get(k);
-
-                        if (tp < obstacleWord.getTop() && obstacleWord.getBottom() < bm) {
-                            if (obstacleWord.getLeft() < minLeft && maxLeft < obstacleWord.getRight()) {
-                                noObstacleWords = false;
-                                break;
-                            }
-                        }
-                    }
-
-                    if (noObstacleWords) {
-                        coherence ++;
-                    }
-                }
-                currentWord.setCoherence(coherence);
-            }
-        }
+        WordCoherence.determine(words);
     }
 
     private void composeWords(Page page) {
         List<TextChunk> words = IteratorUtils.toList(page.getWords());
         List<TextChunk> blocks = new ArrayList<>();
-        List<TextChunk> blockedWords = new ArrayList<>();
+        // Words are consumed with all the words of the same bounds, which are duplicates drawn over them
+        Set<TextChunk> blockedWords = new HashSet<>();
+        StringBuilder text = new StringBuilder();
 
         while (! words.isEmpty()) {
             TextChunk word = words.get(0);
@@ -134,110 +102,93 @@ public class BlockComposer {
 
             TextChunk block = copyTextChunk(word);
             blocks.add(block);
+            text.setLength(0);
+            text.append(block.getText());
+            boolean composed = false;
 
             for (int i = 1; i < words.size(); i ++) {
                 word = words.get(i);
 
                 // Check the case when the end character of the block overlaps the start character of the word
+                String separator = null;
                 if (wordMergingFilter.canMerge(block, word)) {
-                    composeBlock(block, word, "");
-                    block.updateTextLine();
-                    blockedWords.add(word);
+                    separator = "";
+                }
+                else if (canMerge(xFilters, block, word)) {
+                    separator = " ";
                 }
-                else {
-                    boolean canMerge = true;
-                    for (BlockCompositionFilter filter : xFilters) {
-                        if (!filter.canMerge(block, word)) {
-                            canMerge = false;
-                            break;
-                        }
-                    }
-                    if (canMerge) {
-                        composeBlock(block, word, " ");
-                        block.updateTextLine();
-                        blockedWords.add(word);
-                    }
+                if (null != separator) {
+                    composeBlock(block, word, separator, text);
+                    blockedWords.add(word);
+                    composed = true;
                 }
             }
-            words.removeAll(blockedWords);
+            if (composed) {
+                block.setText(text.toString());
+            }
+            words.removeIf(blockedWords::contains);
             blockedWords.clear();
         }
         page.addBlocks(blocks);
     }
 
     private void composeLine(Page page) {
+        composeBlocks(page, yLinesFilters, " ");
+
+        for (TextChunk block: page.getAllBlocks()) {
+            block.setText(block.getText().concat(System.lineSeparator()));
+        }
+    }
+
+    private void composeBlocks(Page page) {
+        composeBlocks(page, yFilters, System.lineSeparator());
+    }
+
+    /**
+     * Merges the page blocks into the first remaining block while the filters allow it. Every round takes
+     * one pass over the remaining blocks, the merged ones are removed from the page and do not remain.
+     */
+    private void composeBlocks(Page page, BlockCompositionFilter[] filters, String separator) {
         List<TextChunk> blocks = IteratorUtils.toList(page.getBlocks());
-        List<TextChunk> blockedWords = new ArrayList<>();
+        List<TextChunk> remainingBlocks = new ArrayList<>(blocks.size());
+        StringBuilder text = new StringBuilder();
 
         while (! blocks.isEmpty()) {
-            TextChunk oldBlock = blocks.get(0);
-            blockedWords.add(oldBlock);
-
-            TextChunk newBlock = oldBlock;
-            blocks.add(newBlock);
+            TextChunk newBlock = blocks.get(0);
+            text.setLength(0);
+            text.append(newBlock.getText());
+            boolean composed = false;
 
             for (int i = 1; i < blocks.size(); i ++) {
-                oldBlock = blocks.get(i);
-
-                boolean canMerge = true;
+                TextChunk oldBlock = blocks.get(i);
 
-                for (BlockCompositionFilter filter: yLinesFilters) {
-                    if (!filter.canMerge(newBlock, oldBlock)) {
-                        canMerge = false;
-                        break;
-                    }
-                }
-                if (canMerge) {
-                    composeLine(newBlock, oldBlock, " ");
-                    newBlock.newTextLine(oldBlock);
-                    blockedWords.add(oldBlock);
+                if (canMerge(filters, newBlock, oldBlock)) {
+                    composeBlock(newBlock, oldBlock, separator, text);
                     page.removeBlock(oldBlock);
+                    page.updateBlock(newBlock);
+                    composed = true;
+                } else {
+                    remainingBlocks.add(oldBlock);
                 }
             }
-            blocks.removeAll(blockedWords);
-            blockedWords.clear();
-        }
-
-        blocks = IteratorUtils.toList(page.getBlocks());
+            if (composed) {
+                newBlock.setText(text.toString());
+            }
 
-        for (int i = 0; i < blocks.size(); i ++) {
-            String s = blocks.get(i).getText().concat(System.lineSeparator());
-            blocks.get(i).setText(s);
+            List<TextChunk> consumedBlocks = blocks;
+            blocks = remainingBlocks;
+            remainingBlocks = consumedBlocks;
+            remainingBlocks.clear();
         }
-
     }
 
-    private void composeBlocks(Page page) {
-        List<TextChunk> blocks = IteratorUtils.toList(page.getBlocks());
-        List<TextChunk> blockedWords = new ArrayList<>();
-
-        while (! blocks.isEmpty()) {
-            TextChunk oldBlock = blocks.get(0);
-            blockedWords.add(oldBlock);
-
-            TextChunk newBlock = oldBlock;
-            blocks.add(newBlock);
-
-            for (int i = 1; i < blocks.size(); i ++) {
-                oldBlock = blocks.get(i);
-
-                boolean canMerge = true;
-                for (BlockCompositionFilter filter: yFilters) {
-                    if (!filter.canMerge(newBlock, oldBlock)) {
-                        canMerge = false;
-                        break;
-                    }
-                }
-                if (canMerge) {
-                    composeBlock(newBlock, oldBlock, System.lineSeparator());
-                    newBlock.newTextLine(oldBlock);
-                    blockedWords.add(oldBlock);
-                    page.removeBlock(oldBlock);
-                }
+    private static boolean canMerge(BlockCompositionFilter[] filters, TextChunk block, TextChunk textChunk) {
+        for (BlockCompositionFilter filter: filters) {
+            if (!filter.canMerge(block, textChunk)) {
+                return false;
             }
-            blocks.removeAll(blockedWords);
-            blockedWords.clear();
         }
+        return true;
     }
 
     private TextChunk copyTextChunk(TextChunk from) {
@@ -261,50 +212,27 @@ public class BlockComposer {
         copy.setSpaceWidth(spaceWidth);
         copy.setStartOrder(startOrder);
         copy.setEndOrder(endOrder);
-        copy.updateTextLine();
 
         return copy;
     }
 
     public void composeBlock(TextChunk block, TextChunk textChunk, String separator) {
-        if (block.equals(textChunk)) return;
-
-        double left   = Math.min(block.getLeft(), textChunk.getLeft());
-        double bottom = Math.max(block.getBottom(), textChunk.getBottom());
-        double right  = Math.max(block.getRight(), textChunk.getRight());
-        double top    = Math.min(block.getTop(), textChunk.getTop());
-
-        block.setLeft(left);
-        block.setBottom(bottom);
-        block.setRight(right);
-        block.setTop(top);
-
-        //String s = block.getText().concat(" ").concat(textChunk.getText());
-        String s = block.getText().concat(separator).concat(textChunk.getText());
-
-        block.setText(s);
-
-        PDFFont blockFont = block.getFont();
-        if (null != blockFont) {
-            PDFFont chunkFont = textChunk.getFont();
-            if (null != chunkFont) {
-                blockFont.setName(chunkFont.getName());
-                blockFont.setItalic(chunkFont.isItalic());
-                blockFont.setBold(chunkFont.isBold());
-                blockFont.setHeight(chunkFont.getHeight());
-            }
-        }
-
-        Color chunkColor = block.getColor();
-        if (null != chunkColor) {
-            block.setColor(chunkColor);
+        StringBuilder text = new StringBuilder(block.getText());
+        if (composeBlock(block, textChunk, separator, text)) {
+            block.setText(text.toString());
         }
-
-        block.setEndOrder(textChunk.getEndOrder());
     }
 
     public void composeLine(TextChunk block, TextChunk textChunk, String separator) {
-        if (block.equals(textChunk)) return;
+        composeBlock(block, textChunk, separator);
+    }
+
+    /**
+     * Extends the block by the text chunk. The text is appended to the given builder, the caller sets it
+     * to the block once it is composed.
+     */
+    private boolean composeBlock(TextChunk block, TextChunk textChunk, String separator, StringBuilder text) {
+        if (block.equals(textChunk)) return false;
 
         double left   = Math.min(block.getLeft(), textChunk.getLeft());
         double bottom = Math.max(block.getBottom(), textChunk.getBottom());
@@ -316,19 +244,14 @@ public class BlockComposer {
         block.setRight(right);
         block.setTop(top);
 
-        //String s = block.getText().concat(" ").concat(textChunk.getText());
-        String s = block.getText().concat(separator).concat(textChunk.getText());
-
-        block.setText(s);
+        text.append(separator).append(textChunk.getText());
 
         PDFFont blockFont = block.getFont();
         if (null != blockFont) {
             PDFFont chunkFont = textChunk.getFont();
             if (null != chunkFont) {
-                blockFont.setName(chunkFont.getName());
-                blockFont.setItalic(chunkFont.isItalic());
-                blockFont.setBold(chunkFont.isBold());
-                blockFont.setHeight(chunkFont.getHeight());
+                // The font is shared with the first word of the block and others, so it is replaced, not changed
+                block.setFont(blockFont.withStyleOf(chunkFont));
             }
         }
 
@@ -338,6 +261,7 @@ public class BlockComposer {
         }
 
         block.setEndOrder(textChunk.getEndOrder());
+        return true;
     }
 
 
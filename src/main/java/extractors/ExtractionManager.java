@@ -7,6 +7,7 @@ import model.table.Table;
 import model.table.TableType;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.pdfbox.text.PDFTextStripper;
+import utils.PageExecutor;
 
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
@@ -26,47 +27,57 @@ public final class ExtractionManager {
 
         String docFileName = document.getSourceFile().getName();
 
-        for(Iterator<Page> pages = document.getPagesItrerator(); pages.hasNext();) {
-            Page page = pages.next();
-            //List<Rectangle2D> frames = page.getFrames();
-            //System.out.println(frames);
-            BorderedTableExtractor bte = new BorderedTableExtractor(page);
-            List<Table> borderedTables = bte.extract();
-            int ordinal = 1;
-
-            // Code tables
-            if (null != borderedTables) {
-                codeTables(borderedTables, docFileName, ordinal, page.getIndex(), "BR");
-                codeBorderedTables(borderedTables, docFileName, ordinal, page.getIndex());
-                result.addAll(borderedTables);
-            }
-
-        }
+        extract(document.getPages(), docFileName, result);
 
          return result.isEmpty() ? null : result;
     }
 
-    public List<Table> extract(int startPage, int endPage) {
+    public List<Table> extract(int startPage, int endPage) throws IOException {
         List<Table> result = new ArrayList<>();
 
         String docFileName = document.getSourceFile().getName();
 
+        List<Page> pages = new ArrayList<>();
         for(int i = startPage; i <= endPage; i++) {
-            Page page = document.getPage(i);
-            BorderedTableExtractor bte = new BorderedTableExtractor(page);
-            List<Table> borderedTables = bte.extract();
-            int ordinal = 1;
+            pages.add(document.getPage(i));
+        }
+        extract(pages, docFileName, result);
 
-            // Code tables
+        return result.isEmpty() ? null : result;
+    }
+
+    private void extract(List<Page> pages, String docFileName, List<Table> result) throws IOException {
+        // Tables are detected page by page on the document worker pool and collected in page order
+        List<List<Table>> pageTables = PageExecutor.invokeAll(pages, document.getExecutor(),
+                page -> extract(page, docFileName));
+
+        for (List<Table> borderedTables: pageTables) {
             if (null != borderedTables) {
-                codeTables(borderedTables, docFileName, ordinal, page.getIndex(), "BR");
-                codeBorderedTables(borderedTables, docFileName, ordinal, page.getIndex());
                 result.addAll(borderedTables);
             }
-
         }
+    }
 
-        return result.isEmpty() ? null : result;
+    /**
+     * Detects the tables of a single page.
+     */
+    public List<Table> extract(Page page) throws IOException {
+        return extract(page, document.getSourceFile().getName());
+    }
+
+    private List<Table> extract(Page page, String docFileName) throws IOException {
+        //List<Rectangle2D> frames = page.getFrames();
+        //System.out.println(frames);
+        BorderedTableExtractor bte = new BorderedTableExtractor(page);
+        List<Table> borderedTables = bte.extract();
+        int ordinal = 1;
+
+        // Code tables
+        if (null != borderedTables) {
+            codeTables(borderedTables, docFileName, ordinal, page.getIndex(), "BR");
+            codeBorderedTables(borderedTables, docFileName, ordinal, page.getIndex());
+        }
+        return borderedTables;
     }
 
     private void codeBorderedTables(List<Table> tables, String fileName, int section, int pageIndex) {
@@ -0,0 +1,372 @@
+package extractors;
+
+import model.TextChunk;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts for every word the words left-aligned with it (within MAX_LEFT_DEVIATION) that are not separated
+ * from it vertically by an obstacle word, a word crossing the alignment on both sides.
+ *
+ * Words are swept in the order of their left coordinate. The obstacles of a word are kept in two segment
+ * trees, which give the nearest obstacle edge below and above the word, and the aligned words beyond those
+ * edges are counted in a merge sort tree. This takes O(n log^2 n) instead of the O(n^3) of comparing every
+ * pair against every word, which is kept for words with an undefined or a negative height.
+ */
+final class WordCoherence {
+
+    static final float MAX_LEFT_DEVIATION = 1f;
+
+    private WordCoherence() {
+    }
+
+    static void determine(List<TextChunk> words) {
+        int n = words.size();
+        // A single word is left as is, it has nothing to cohere with
+        if (n < 2) {
+            return;
+        }
+
+        double[] left = new double[n];
+        double[] right = new double[n];
+        double[] top = new double[n];
+        double[] bottom = new double[n];
+        for (int i = 0; i < n; i++) {
+            TextChunk word = words.get(i);
+            left[i] = word.getLeft();
+            right[i] = word.getRight();
+            top[i] = word.getTop();
+            bottom[i] = word.getBottom();
+            if (Double.isNaN(left[i]) || Double.isNaN(right[i]) || Double.isNaN(top[i]) || Double.isNaN(bottom[i])
+                    || bottom[i] < top[i]) {
+                determineByBruteForce(words);
+                return;
+            }
+        }
+
+        Integer[] byLeft = sortedIndexes(left);
+        Integer[] byRight = sortedIndexes(right);
+        Integer[] byTop = sortedIndexes(top);
+        Integer[] byBottom = sortedIndexes(bottom);
+
+        double[] leftSorted = new double[n];
+        double[] topSorted = new double[n];
+        double[] bottomSorted = new double[n];
+        int[] topRank = new int[n];
+        int[] bottomRank = new int[n];
+        for (int r = 0; r < n; r++) {
+            leftSorted[r] = left[byLeft[r]];
+            topSorted[r] = top[byTop[r]];
+            bottomSorted[r] = bottom[byBottom[r]];
+            topRank[byTop[r]] = r;
+            bottomRank[byBottom[r]] = r;
+        }
+
+        // Tops and bottoms of the words in the left order, to count the aligned words of a window
+        double[] topsByLeft = new double[n];
+        double[] bottomsByLeft = new double[n];
+        for (int r = 0; r < n; r++) {
+            topsByLeft[r] = top[byLeft[r]];
+            bottomsByLeft[r] = bottom[byLeft[r]];
+        }
+        MergeSortTree tops = new MergeSortTree(topsByLeft);
+        MergeSortTree bottoms = new MergeSortTree(bottomsByLeft);
+
+        // Bottoms of obstacles by their top rank, tops of obstacles by their bottom rank
+        SegmentTree minBottom = new SegmentTree(n, Double.POSITIVE_INFINITY, true);
+        SegmentTree maxTop = new SegmentTree(n, Double.NEGATIVE_INFINITY, false);
+        boolean[] inserted = new boolean[n];
+        boolean[] expired = new boolean[n];
+        int insertCursor = 0;
+        int expireCursor = 0;
+
+        for (int r = 0; r < n; r++) {
+            int i = byLeft[r];
+            double minLeft = left[i] - MAX_LEFT_DEVIATION;
+            double maxLeft = left[i] + MAX_LEFT_DEVIATION;
+
+            // Obstacles start left of minLeft and end right of maxLeft, both bounds only grow in the sweep
+            while (insertCursor < n && left[byLeft[insertCursor]] < minLeft) {
+                int k = byLeft[insertCursor++];
+                inserted[k] = true;
+                if (!expired[k]) {
+                    minBottom.set(topRank[k], bottom[k]);
+                    maxTop.set(bottomRank[k], top[k]);
+                }
+            }
+            while (expireCursor < n && !(maxLeft < right[byRight[expireCursor]])) {
+                int k = byRight[expireCursor++];
+                expired[k] = true;
+                if (inserted[k]) {
+                    minBottom.set(topRank[k], Double.POSITIVE_INFINITY);
+                    maxTop.set(bottomRank[k], Double.NEGATIVE_INFINITY);
+                }
+            }
+
+            // The aligned words, |left - left[i]| < MAX_LEFT_DEVIATION, are a range in the left order
+            int from = firstAligned(leftSorted, left[i]);
+            int to = lastAligned(leftSorted, left[i]) + 1;
+
+            // Words below the word are coherent up to the top edge of the nearest obstacle below it
+            double obstacleBottom = minBottom.query(upperBound(topSorted, bottom[i]), n);
+            int below = tops.countGreater(from, to, bottom[i]) - tops.countGreater(from, to, obstacleBottom);
+
+            // Words above the word are coherent from the bottom edge of the nearest obstacle above it
+            double obstacleTop = maxTop.query(0, lowerBound(bottomSorted, top[i]));
+            int above = bottoms.countLess(from, to, top[i]) - bottoms.countLess(from, to, obstacleTop);
+
+            // Words overlapping the word vertically are always coherent, the word itself is one of them
+            int overlapping = (to - from) - tops.countGreater(from, to, bottom[i]) - bottoms.countLess(from, to, top[i]);
+
+            words.get(i).setCoherence(below + above + overlapping - 1);
+        }
+    }
+
+    /**
+     * The straightforward computation, comparing every pair of aligned words against every other word.
+     */
+    static void determineByBruteForce(List<TextChunk> words) {
+        final float maxLeftDeviation = MAX_LEFT_DEVIATION;
+
+        for (int i = 0; i < words.size(); i++) {
+            TextChunk currentWord = words.get(i);
+            int coherence = 0;
+            double minLeft = currentWord.getLeft() - maxLeftDeviation;
+            double maxLeft = currentWord.getLeft() + maxLeftDeviation;
+
+            for (int j = 0; j < words.size(); j++) {
+                if (j == i) continue;
+
+                TextChunk coherentWord = words.get(j);
+                double deviation = Math.abs(currentWord.getLeft() - coherentWord.getLeft());
+
+                if (deviation < maxLeftDeviation) {
+                    double tp  = 0f, bm  = 0f;
+
+                    if (currentWord.getBottom() < coherentWord.getTop()) {
+                        tp = currentWord.getBottom();
+                        bm = coherentWord.getTop();
+                    } else if (currentWord.getTop() > coherentWord.getBottom()) {
+                        tp = coherentWord.getBottom();
+                        bm = currentWord.getTop();
+                    }
+
+                    boolean noObstacleWords = true;
+                    for (int k = 0; k < words.size(); k++) {
+                        if (k == i || k == j) continue;
+                        TextChunk obstacleWord = words.get(k);
+
+                        if (tp < obstacleWord.getTop() && obstacleWord.getBottom() < bm) {
+                            if (obstacleWord.getLeft() < minLeft && maxLeft < obstacleWord.getRight()) {
+                                noObstacleWords = false;
+                                break;
+                            }
+                        }
+                    }
+
+                    if (noObstacleWords) {
+                        coherence ++;
+                    }
+                }
+                currentWord.setCoherence(coherence);
+            }
+        }
+    }
+
+    private static Integer[] sortedIndexes(double[] values) {
+        Integer[] indexes = new Integer[values.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, Comparator.comparingDouble(i -> values[i]));
+        return indexes;
+    }
+
+    private static boolean isAligned(double left, double another) {
+        return Math.abs(left - another) < MAX_LEFT_DEVIATION;
+    }
+
+    // The aligned lefts are contiguous in the sorted lefts, the distance only grows away from the left
+
+    private static int firstAligned(double[] lefts, double left) {
+        int low = 0;
+        int high = lefts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lefts[middle] < left && !isAligned(left, lefts[middle])) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int lastAligned(double[] lefts, double left) {
+        int low = -1;
+        int high = lefts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (lefts[middle] > left && !isAligned(left, lefts[middle])) {
+                high = middle - 1;
+            } else {
+                low = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first value greater than the given one.
+     */
+    private static int upperBound(double[] values, double value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] > value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first value not less than the given one.
+     */
+    private static int lowerBound(double[] values, double value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A minimum (or maximum) over ranges of positions with point updates.
+     */
+    private static final class SegmentTree {
+        private final int size;
+        private final double[] tree;
+        private final double neutral;
+        private final boolean minimum;
+
+        private SegmentTree(int n, double neutral, boolean minimum) {
+            int size = 1;
+            while (size < n) {
+                size <<= 1;
+            }
+            this.size = size;
+            this.tree = new double[2 * size];
+            this.neutral = neutral;
+            this.minimum = minimum;
+            Arrays.fill(tree, neutral);
+        }
+
+        private double combine(double a, double b) {
+            return minimum ? Math.min(a, b) : Math.max(a, b);
+        }
+
+        private void set(int position, double value) {
+            int node = position + size;
+            tree[node] = value;
+            for (node >>= 1; node > 0; node >>= 1) {
+                tree[node] = combine(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        /**
+         * Combines the positions from (inclusive) to (exclusive).
+         */
+        private double query(int from, int to) {
+            double result = neutral;
+            for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    result = combine(result, tree[l++]);
+                }
+                if ((r & 1) == 1) {
+                    result = combine(result, tree[--r]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Counts the values of a range of positions that are greater (or less) than a given value.
+     */
+    private static final class MergeSortTree {
+        private final int size;
+        private final double[][] tree;
+
+        private MergeSortTree(double[] values) {
+            int size = 1;
+            while (size < values.length) {
+                size <<= 1;
+            }
+            this.size = size;
+            this.tree = new double[2 * size][];
+            for (int i = 0; i < size; i++) {
+                tree[size + i] = i < values.length ? new double[] {values[i]} : new double[0];
+            }
+            for (int node = size - 1; node > 0; node--) {
+                tree[node] = merge(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        private static double[] merge(double[] a, double[] b) {
+            double[] result = new double[a.length + b.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < a.length && j < b.length) {
+                result[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+            }
+            while (i < a.length) {
+                result[k++] = a[i++];
+            }
+            while (j < b.length) {
+                result[k++] = b[j++];
+            }
+            return result;
+        }
+
+        private int countGreater(int from, int to, double value) {
+            int count = 0;
+            for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    double[] node = tree[l++];
+                    count += node.length - upperBound(node, value);
+                }
+                if ((r & 1) == 1) {
+                    double[] node = tree[--r];
+                    count += node.length - upperBound(node, value);
+                }
+            }
+            return count;
+        }
+
+        private int countLess(int from, int to, double value) {
+            int count = 0;
+            for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    count += lowerBound(tree[l++], value);
+                }
+                if ((r & 1) == 1) {
+                    count += lowerBound(tree[--r], value);
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import extractors.bordered.filters.BorderedTableSeparator;
 import model.PDFRectangle;
 import model.Page;
 import model.Ruling;
+import model.RulingSet;
 import model.TextChunk;
 import model.table.Cell;
 import model.table.Table;
@@ -14,54 +15,9 @@ import utils.Utils;
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public final class BorderedTableExtractor extends AbstractTableExtractor {
 
-    private static final Comparator<Point2D> POINT_COMPARATOR = new Comparator<Point2D>() {
-        @Override
-        public int compare(Point2D arg0, Point2D arg1) {
-            int result = 0;
-            float arg0X = Utils.round(arg0.getX(), 2);
-            float arg0Y = Utils.round(arg0.getY(), 2);
-            float arg1X = Utils.round(arg1.getX(), 2);
-            float arg1Y = Utils.round(arg1.getY(), 2);
-
-            if (arg0Y > arg1Y) {
-                result = 1;
-            } else if (arg0Y < arg1Y) {
-                result = -1;
-            } else if (arg0X > arg1X) {
-                result = 1;
-            } else if (arg0X < arg1X) {
-                result = -1;
-            }
-            return result;
-        }
-    };
-
-    private static final Comparator<Point2D> X_FIRST_POINT_COMPARATOR = new Comparator<Point2D>() {
-        @Override
-        public int compare(Point2D arg0, Point2D arg1) {
-            int result = 0;
-            float arg0X = Utils.round(arg0.getX(), 2);
-            float arg0Y = Utils.round(arg0.getY(), 2);
-            float arg1X = Utils.round(arg1.getX(), 2);
-            float arg1Y = Utils.round(arg1.getY(), 2);
-
-            if (arg0X > arg1X) {
-                result = 1;
-            } else if (arg0X < arg1X) {
-                result = -1;
-            } else if (arg0Y > arg1Y) {
-                result = 1;
-            } else if (arg0Y < arg1Y) {
-                result = -1;
-            }
-            return result;
-        }
-    };
-
     private ArrayList<Range> horizontal = new ArrayList<>();
     private ArrayList<Range> vertical = new ArrayList<>();
 
@@ -112,7 +68,7 @@ public final class BorderedTableExtractor extends AbstractTableExtractor {
         page.addVerticalRulings(verticalRulings);
         page.addHorizontalRulings(horizontalRulings);
         findIntersections(joinedHorizontalRulings, joinedVerticalRulings);
-        ArrayList<PDFRectangle> cells = (ArrayList<PDFRectangle>) findCells();
+        ArrayList<PDFRectangle> cells = (ArrayList<PDFRectangle>) findCells(intersectionPoints);
         page.addCells(cells);
         for (PDFRectangle cell: cells) {
             if (cell.getWidth() > Cell.MIN_CELL_WIDTH && cell.getHeight() > Cell.MIN_CELL_HEIGHT) {
@@ -139,19 +95,7 @@ public final class BorderedTableExtractor extends AbstractTableExtractor {
                 }
             }
 
-            List<PDFRectangle> filteredTableCells = new ArrayList<>();
-
-            for (PDFRectangle c: tableCells) {
-                boolean isIntersected = false;
-                for (PDFRectangle c1: filteredTableCells) {
-                    if (c1.intersects(c)) {
-                        c1.add(c);
-                        isIntersected = true;
-                    }
-                }
-                if (!isIntersected)
-                    filteredTableCells.add(c);
-            }
+            List<PDFRectangle> filteredTableCells = CellMerger.merge(tableCells);
 
             for (PDFRectangle c: filteredTableCells) {
                 horizontal_range = new Range(c.getLeft(), c.getRight());
@@ -176,19 +120,13 @@ public final class BorderedTableExtractor extends AbstractTableExtractor {
             table.setHorizontal(horizontal);
             table.setVertical(vertical);
 
-            ArrayList<TextChunk> chunks = new ArrayList<>();
-            Iterator<TextChunk> blocksIterator = page.getBlocks();
-
-            while (blocksIterator.hasNext()) {
-                TextChunk textChunk = blocksIterator.next();
-                chunks.add(textChunk);
-            }
-
-            for (PDFRectangle c: filteredTableCells) {
+            CellContents cellContents = new CellContents(filteredTableCells);
+            List<List<TextChunk>> blocksByCell = cellContents.assignBlocks(page.getBlocks());
+            List<List<TextChunk.TextLine>> wordsByCell = cellContents.assignWords(page.getTextLines());
 
-                List<TextChunk> cellBlocks = chunks.stream()
-                        .filter(tb -> c.intersects(tb))
-                        .collect(Collectors.toList());
+            for (int k = 0; k < filteredTableCells.size(); k++) {
+                PDFRectangle c = filteredTableCells.get(k);
+                List<TextChunk> cellBlocks = blocksByCell.get(k);
 
 /*                if (null != cellBlocks && cellBlocks.size() > 1) {
                     // Merge all blocks located inside the cell into the first one
@@ -210,6 +148,7 @@ public final class BorderedTableExtractor extends AbstractTableExtractor {
 
                 PDFRectangle bbox = new PDFRectangle(c.getLeft(), c.getTop(), c.getRight(), c.getBottom());
                 Cell cell = new Cell(bbox, 0, cellBlocks, startColumn, startRow, endColumn, endRow);
+                cell.setTextLineWords(wordsByCell.get(k));
 
                 table.addCell(cell, startRow);
 
@@ -320,84 +259,105 @@ public final class BorderedTableExtractor extends AbstractTableExtractor {
     }
 
     private List<Ruling> joinRulings(List<Ruling> rulings, int tolerance) {
-        List<Ruling> joinedRulings = new ArrayList<Ruling>();
-        Collections.sort(rulings, new Comparator<Ruling>() {
-            @Override
-            public int compare(Ruling a, Ruling b) {
-                final float diff = a.getPosition() - b.getPosition();
-                return java.lang.Float.compare(diff == 0 ? a.getStart() - b.getStart() : diff, 0f);
-            }
-        });
-
-        for (Ruling nextLine : rulings) {
-            Ruling last = joinedRulings.isEmpty() ? null : joinedRulings.get(joinedRulings.size() - 1);
-            if (last != null && Utils.feq(nextLine.getPosition(),
-                    last.getPosition()) && last.nearlyIntersects(nextLine, tolerance)) {
-                final float lastStart = last.getStart();
-                final float lastEnd = last.getEnd();
-
-                final boolean lastFlipped = lastStart > lastEnd;
-                final boolean nextFlipped = nextLine.getStart() > nextLine.getEnd();
+        return RulingSet.collapse(rulings, tolerance);
+    }
 
-                boolean differentDirections = nextFlipped != lastFlipped;
-                float nextS = differentDirections ? nextLine.getEnd() : nextLine.getStart();
-                float nextE = differentDirections ? nextLine.getStart() : nextLine.getEnd();
+    /**
+     * An intersection point with its rulings and its place among the points of its column and its row.
+     */
+    private static final class GridPoint {
+        private final Point2D.Float point;
+        private final Ruling[] rulings; // The horizontal and the vertical ruling of the point
+        private final long latticeKey;  // Orders the points by y and then by x in hundredths
+        private List<GridPoint> column; // Points of the same x by y
+        private int columnIndex;
+        private List<GridPoint> row;    // Points of the same y by x
+        private int rowIndex;
+
+        private GridPoint(Point2D.Float point, Ruling[] rulings) {
+            this.point = point;
+            this.rulings = rulings;
+            this.latticeKey = LatticeKey.byY(point.x, point.y);
+        }
+    }
 
-                final float newStart = lastFlipped ? Math.max(nextS, lastStart) : Math.min(nextS, lastStart);
-                final float newEnd = lastFlipped ? Math.min(nextE, lastEnd) : Math.max(nextE, lastEnd);
-                last.setStartEnd(newStart, newEnd);
-            }
-            else if (nextLine.length() == 0) {
-                continue;
+    /**
+     * Returns the intersection points in the order of the map, each linked to its column and its row.
+     */
+    private static List<GridPoint> indexIntersectionPoints(Map<Point2D, Ruling[]> intersectionPoints) {
+        List<GridPoint> points = new ArrayList<>(intersectionPoints.size());
+        // Adding zero makes -0.0 the same key as 0.0, as the coordinates are compared as numbers
+        Map<Double, List<GridPoint>> columns = new HashMap<>();
+        Map<Double, List<GridPoint>> rows = new HashMap<>();
+        for (Map.Entry<Point2D, Ruling[]> entry: intersectionPoints.entrySet()) {
+            GridPoint point = new GridPoint((Point2D.Float) entry.getKey(), entry.getValue());
+            point.column = columns.computeIfAbsent(point.point.getX() + 0.0, x -> new ArrayList<>());
+            point.column.add(point);
+            point.row = rows.computeIfAbsent(point.point.getY() + 0.0, y -> new ArrayList<>());
+            point.row.add(point);
+            points.add(point);
+        }
+        for (List<GridPoint> column: columns.values()) {
+            column.sort(Comparator.comparingDouble(p -> p.point.getY()));
+            for (int i = 0; i < column.size(); i++) {
+                column.get(i).columnIndex = i;
             }
-            else {
-                joinedRulings.add(nextLine);
+        }
+        for (List<GridPoint> row: rows.values()) {
+            row.sort(Comparator.comparingDouble(p -> p.point.getX()));
+            for (int i = 0; i < row.size(); i++) {
+                row.get(i).rowIndex = i;
             }
         }
-        return joinedRulings;
+        return points;
     }
 
-    private List<PDFRectangle> findCells() {
+    /**
+     * Finds a cell for every intersection point as its top left corner. The bottom left corner is searched down
+     * the column of the point and the top right one along its row, nearest first, so a cell of a full grid is
+     * found from the next points below and to the right.
+     */
+    static List<PDFRectangle> findCells(Map<Point2D, Ruling[]> intersectionPoints) {
         List<PDFRectangle> cellsFound = new ArrayList<>();
-        List<Point2D> intersectionPointsList = new ArrayList<>(intersectionPoints.keySet());
-        Collections.sort(intersectionPointsList, POINT_COMPARATOR);
-        boolean doBreak = false;
+        List<GridPoint> points = indexIntersectionPoints(intersectionPoints);
 
-        for (int i = 0; i < intersectionPointsList.size(); i++) {
-            Point2D.Float topLeft = (Point2D.Float)intersectionPointsList.get(i);
-            Ruling[] hv = intersectionPoints.get(topLeft);
-            doBreak = false;
+        // The points by their exact coordinates, so a bottom right corner is looked up by binary search
+        long[] exactKeys = new long[points.size()];
+        for (int i = 0; i < exactKeys.length; i++) {
+            GridPoint point = points.get(i);
+            exactKeys[i] = LatticeKey.exact(point.point.x, point.point.y);
+        }
+        Ruling[][] rulingsByKey = new Ruling[exactKeys.length][];
+        long[] sortedKeys = exactKeys.clone();
+        Arrays.sort(sortedKeys);
+        for (int i = 0; i < exactKeys.length; i++) {
+            rulingsByKey[Arrays.binarySearch(sortedKeys, exactKeys[i])] = points.get(i).rulings;
+        }
 
-            List<Point2D> xPoints = new ArrayList<>();
-            List<Point2D> yPoints = new ArrayList<>();
+        points.sort(Comparator.comparingLong(p -> p.latticeKey));
 
-            for (Point2D p : intersectionPointsList.subList(i, intersectionPointsList.size())) {
-                if (p.getX() == topLeft.getX() && p.getY() > topLeft.getY()) {
-                    xPoints.add(p);
-                }
-                if (p.getY() == topLeft.getY() && p.getX() > topLeft.getX()) {
-                    yPoints.add(p);
-                }
-            }
-            outer:
-            for (Point2D xPoint : xPoints) {
-                if (doBreak) {
-                    break;
-                }
+        for (GridPoint topLeft: points) {
+            Ruling[] hv = topLeft.rulings;
 
-                if (!hv[1].equals(intersectionPoints.get(xPoint)[1])) {
+            outer:
+            for (int i = topLeft.columnIndex + 1; i < topLeft.column.size(); i++) {
+                GridPoint xPoint = topLeft.column.get(i);
+                if (!hv[1].equals(xPoint.rulings[1])) {
                     continue;
                 }
-                for (Point2D yPoint : yPoints) {
-                    if (!hv[0].equals(intersectionPoints.get(yPoint)[0])) {
+                for (int j = topLeft.rowIndex + 1; j < topLeft.row.size(); j++) {
+                    GridPoint yPoint = topLeft.row.get(j);
+                    if (!hv[0].equals(yPoint.rulings[0])) {
                         continue;
                     }
-                    Point2D.Float btmRight = new Point2D.Float((float) yPoint.getX(), (float) xPoint.getY());
-                    if (intersectionPoints.containsKey(btmRight)
-                            && intersectionPoints.get(btmRight)[0].equals(intersectionPoints.get(xPoint)[0])
-                            && intersectionPoints.get(btmRight)[1].equals(intersectionPoints.get(yPoint)[1])) {
-                        cellsFound.add(new PDFRectangle(topLeft, btmRight));
-                        doBreak = true;
+                    long btmRightKey = LatticeKey.exact(yPoint.point.x, xPoint.point.y);
+                    int btmRightIndex = Arrays.binarySearch(sortedKeys, btmRightKey);
+                    Ruling[] btmRightRulings = btmRightIndex < 0 ? null : rulingsByKey[btmRightIndex];
+                    if (null != btmRightRulings
+                            && btmRightRulings[0].equals(xPoint.rulings[0])
+                            && btmRightRulings[1].equals(yPoint.rulings[1])) {
+                        Point2D.Float btmRight = new Point2D.Float(yPoint.point.x, xPoint.point.y);
+                        cellsFound.add(new PDFRectangle(topLeft.point, btmRight));
                         break outer;
                     }
                 }
@@ -406,130 +366,111 @@ public final class BorderedTableExtractor extends AbstractTableExtractor {
         return cellsFound;
     }
 
+    /**
+     * Traces the outlines of groups of adjoining cells and returns their bounds. The corners of an odd number of
+     * cells lie on the outlines; they are keyed by their lattice keys, paired along the rows and the columns, and
+     * walked from the top left one of each outline, alternating horizontal and vertical edges.
+     */
     public static List<? extends PDFRectangle> findTableAreas(List<? extends PDFRectangle> cells) {
         List<PDFRectangle> rectangles = new ArrayList<>();
-        Set<Point2D> pointSet = new HashSet<>();
-        Map<Point2D, Point2D> edgesH = new HashMap<>();
-        Map<Point2D, Point2D> edgesV = new HashMap<>();
-        int i = 0;
 
         cells = new ArrayList<>(new HashSet<>(cells));
 
         Collections.sort(cells, PDFRectangle.RECTANGLE_COMPARATOR);
 
+        Map<Long, Point2D> corners = new HashMap<>();
         for (PDFRectangle cell: cells) {
             for(Point2D pt: cell.getPoints()) {
-                if (pointSet.contains(pt)) {
-                    pointSet.remove(pt);
-                } else {
-                    pointSet.add(pt);
+                long key = LatticeKey.byY(pt.getX(), pt.getY());
+                if (null == corners.remove(key)) {
+                    corners.put(key, pt);
                 }
             }
         }
 
-        List<Point2D> pointsSortX = new ArrayList<>(pointSet);
-        Collections.sort(pointsSortX, X_FIRST_POINT_COMPARATOR);
-        List<Point2D> pointsSortY = new ArrayList<>(pointSet);
-        Collections.sort(pointsSortY, POINT_COMPARATOR);
+        // The corners by y and then by x
+        int count = corners.size();
+        long[] keys = new long[count];
+        int k = 0;
+        for (long key: corners.keySet()) {
+            keys[k++] = key;
+        }
+        Arrays.sort(keys);
+        Point2D[] points = new Point2D[count];
+        long[] xKeys = new long[count];
+        for (k = 0; k < count; k++) {
+            points[k] = corners.get(keys[k]);
+            xKeys[k] = LatticeKey.byX(points[k].getX(), points[k].getY());
+        }
 
-        while (i < pointSet.size()) {
-            float currY = (float) pointsSortY.get(i).getY();
-            while (i < pointSet.size() && Utils.feq(pointsSortY.get(i).getY(), currY)) {
-                edgesH.put(pointsSortY.get(i), pointsSortY.get(i+1));
-                edgesH.put(pointsSortY.get(i+1), pointsSortY.get(i));
+        // The corners by x and then by y
+        long[] sortedXKeys = xKeys.clone();
+        Arrays.sort(sortedXKeys);
+        int[] byX = new int[count];
+        for (k = 0; k < count; k++) {
+            byX[Arrays.binarySearch(sortedXKeys, xKeys[k])] = k;
+        }
+
+        // The other end of the horizontal and the vertical edge of every corner
+        int[] edgesH = new int[count];
+        int[] edgesV = new int[count];
+
+        int i = 0;
+        while (i < count) {
+            float currY = (float) points[i].getY();
+            while (i < count && Utils.feq(points[i].getY(), currY)) {
+                edgesH[i] = i + 1;
+                edgesH[i + 1] = i;
                 i += 2;
             }
         }
 
         i = 0;
-        while (i < pointSet.size()) {
-            float currX = (float) pointsSortX.get(i).getX();
-            while (i < pointSet.size() && Utils.feq(pointsSortX.get(i).getX(), currX)) {
-                edgesV.put(pointsSortX.get(i), pointsSortX.get(i+1));
-                edgesV.put(pointsSortX.get(i+1), pointsSortX.get(i));
+        while (i < count) {
+            float currX = (float) points[byX[i]].getX();
+            while (i < count && Utils.feq(points[byX[i]].getX(), currX)) {
+                edgesV[byX[i]] = byX[i + 1];
+                edgesV[byX[i + 1]] = byX[i];
                 i += 2;
             }
         }
 
-        List<List<PolygonVertex>> polygons = new ArrayList<>();
-        Point2D nextVertex;
-        while (!edgesH.isEmpty()) {
-            ArrayList<PolygonVertex> polygon = new ArrayList<>();
-            Point2D first = edgesH.keySet().iterator().next();
-            polygon.add(new PolygonVertex(first, Direction.HORIZONTAL));
-            edgesH.remove(first);
-
-            while (true) {
-                PolygonVertex curr = polygon.get(polygon.size() - 1);
-                PolygonVertex lastAddedVertex;
-                if (curr.direction == Direction.HORIZONTAL) {
-                    nextVertex = edgesV.get(curr.point);
-                    edgesV.remove(curr.point);
-                    lastAddedVertex = new PolygonVertex(nextVertex, Direction.VERTICAL);
-                    polygon.add(lastAddedVertex);
-                } else {
-                    nextVertex = edgesH.get(curr.point);
-                    edgesH.remove(curr.point);
-                    lastAddedVertex = new PolygonVertex(nextVertex, Direction.HORIZONTAL);
-                    polygon.add(lastAddedVertex);
-                }
-
-                if (lastAddedVertex.equals(polygon.get(0))) {
-                    polygon.remove(polygon.size() - 1);
-                    break;
-                }
-            }
-
-            for (PolygonVertex vertex: polygon) {
-                edgesH.remove(vertex.point);
-                edgesV.remove(vertex.point);
+        // Corners of traced outlines
+        boolean[] traced = new boolean[count];
+        for (int first = 0; first < count; first++) {
+            if (traced[first]) {
+                continue;
             }
-            polygons.add(polygon);
-        }
-
-        for(List<PolygonVertex> poly: polygons) {
             float top = java.lang.Float.MAX_VALUE;
             float left = java.lang.Float.MAX_VALUE;
             float bottom = java.lang.Float.MIN_VALUE;
             float right = java.lang.Float.MIN_VALUE;
-            for (PolygonVertex pt: poly) {
-                top = (float) Math.min(top, pt.point.getY());
-                left = (float) Math.min(left, pt.point.getX());
-                bottom = (float) Math.max(bottom, pt.point.getY());
-                right = (float) Math.max(right, pt.point.getX());
-            }
-            rectangles.add(new PDFRectangle(left, top, right, bottom ));
-        }
-
-        return rectangles;
-    }
-
-    private enum Direction {
-        HORIZONTAL,
-        VERTICAL
-    }
 
-    static class PolygonVertex {
-        Point2D point;
-        Direction direction;
+            // Every corner is left along its vertical edge after reached along its horizontal one
+            int corner = first;
+            do {
+                traced[corner] = true;
+                Point2D pt = points[corner];
+                top = (float) Math.min(top, pt.getY());
+                left = (float) Math.min(left, pt.getX());
+                bottom = (float) Math.max(bottom, pt.getY());
+                right = (float) Math.max(right, pt.getX());
+
+                corner = edgesV[corner];
+                traced[corner] = true;
+                pt = points[corner];
+                top = (float) Math.min(top, pt.getY());
+                left = (float) Math.min(left, pt.getX());
+                bottom = (float) Math.max(bottom, pt.getY());
+                right = (float) Math.max(right, pt.getX());
+
+                corner = edgesH[corner];
+            } while (corner != first && !traced[corner]);
 
-        public PolygonVertex(Point2D point, Direction direction) {
-            this.direction = direction;
-            this.point = point;
-        }
-
-        @Override public boolean equals(Object other) {
-            if (this == other)
-                return true;
-            if (!(other instanceof PolygonVertex))
-                return false;
-            return this.point.equals(((PolygonVertex) other).point);
-        }
-
-        @Override public int hashCode() {
-            return this.point.hashCode();
+            rectangles.add(new PDFRectangle(left, top, right, bottom ));
         }
 
+        return rectangles;
     }
 
     public class RangeComporator implements Comparator<Range> {
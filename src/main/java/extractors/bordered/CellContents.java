@@ -0,0 +1,82 @@
+package extractors.bordered;
+
+import model.PDFRectangle;
+import model.TextChunk;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Assigns the text blocks and the words of the text lines of a page to the cells of a table in one pass. The cells
+ * are indexed by a cell grid, so a block or a word is tested only against the cells near it. Blocks and words are
+ * visited in page order, so every cell gets them in that order.
+ */
+final class CellContents {
+
+    private final List<PDFRectangle> cells;
+    private final CellGrid grid;
+
+    CellContents(List<PDFRectangle> cells) {
+        this.cells = cells;
+        grid = new CellGrid(cells);
+        for (int k = 0; k < cells.size(); k++) {
+            PDFRectangle cell = cells.get(k);
+            if (!(cell.getWidth() > 0 && cell.getHeight() > 0)) {
+                continue; // An empty cell intersects nothing
+            }
+            grid.add(k, grid.getRange(cell), null);
+        }
+    }
+
+    /**
+     * Returns the blocks intersecting every cell, in the order of the cells.
+     */
+    List<List<TextChunk>> assignBlocks(Iterator<TextChunk> blocks) {
+        List<List<TextChunk>> result = createLists();
+        while (blocks.hasNext()) {
+            TextChunk block = blocks.next();
+            if (block.getWidth() > 0 && block.getHeight() > 0) {
+                int[] range = grid.getRange(block.getLeft(), block.getTop(), block.getRight(), block.getBottom());
+                for (int k: grid.getCells(range)) {
+                    if (cells.get(k).intersects(block)) {
+                        result.get(k).add(block);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the words of the text lines intersecting every cell, in the order of the cells.
+     */
+    List<List<TextChunk.TextLine>> assignWords(List<TextChunk> textLines) {
+        List<List<TextChunk.TextLine>> result = createLists();
+        for (TextChunk line: textLines) {
+            for (TextChunk.TextLine word: line.getWords()) {
+                double width = word.getWidth();
+                double height = word.getHeight();
+                if (width > 0 && height > 0) {
+                    double left = word.getLeft();
+                    double top = word.getTop();
+                    int[] range = grid.getRange(left, top, left + width, top + height);
+                    for (int k: grid.getCells(range)) {
+                        if (word.intersects(cells.get(k))) {
+                            result.get(k).add(word);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private <T> List<List<T>> createLists() {
+        List<List<T>> result = new ArrayList<>(cells.size());
+        for (int k = 0; k < cells.size(); k++) {
+            result.add(new ArrayList<>());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package extractors.bordered;
+
+import model.PDFRectangle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cells indexed by the buckets of a grid of about the average cell size. A cell is registered in every bucket
+ * its bounds cover, so a rectangle is tested only against the cells in its buckets instead of all of them.
+ */
+final class CellGrid {
+
+    private final Map<Long, List<Integer>> buckets = new HashMap<>();
+    private final double bucketWidth;
+    private final double bucketHeight;
+    // The last query every cell was found by, so a cell in several buckets is found once
+    private final int[] found;
+    private int query;
+    // Range of the buckets holding cells, the range of a query is clipped to it
+    private int[] extent;
+
+    /**
+     * Creates an empty grid sized for the cells, which are registered by their index in the list.
+     */
+    CellGrid(List<PDFRectangle> cells) {
+        double width = 0;
+        double height = 0;
+        for (PDFRectangle cell: cells) {
+            width += cell.getWidth();
+            height += cell.getHeight();
+        }
+        int count = Math.max(cells.size(), 1);
+        bucketWidth = Math.max(width / count, 1);
+        bucketHeight = Math.max(height / count, 1);
+        found = new int[cells.size()];
+    }
+
+    int[] getRange(PDFRectangle cell) {
+        return getRange(cell.getLeft(), cell.getTop(), cell.getRight(), cell.getBottom());
+    }
+
+    /**
+     * Returns the first and last bucket columns and rows the bounds cover, as left, top, right and bottom.
+     */
+    int[] getRange(double left, double top, double right, double bottom) {
+        return new int[] {
+                (int) Math.floor(left / bucketWidth),
+                (int) Math.floor(top / bucketHeight),
+                (int) Math.floor(right / bucketWidth),
+                (int) Math.floor(bottom / bucketHeight)
+        };
+    }
+
+    /**
+     * Registers the cell in the buckets of the range, except the ones of the old range it is registered in
+     * already, which may be null.
+     */
+    void add(int cell, int[] range, int[] oldRange) {
+        if (null == extent) {
+            extent = range.clone();
+        } else {
+            extent[0] = Math.min(extent[0], range[0]);
+            extent[1] = Math.min(extent[1], range[1]);
+            extent[2] = Math.max(extent[2], range[2]);
+            extent[3] = Math.max(extent[3], range[3]);
+        }
+        for (int x = range[0]; x <= range[2]; x++) {
+            for (int y = range[1]; y <= range[3]; y++) {
+                if (null != oldRange && oldRange[0] <= x && x <= oldRange[2] && oldRange[1] <= y && y <= oldRange[3]) {
+                    continue;
+                }
+                buckets.computeIfAbsent(key(x, y), b -> new ArrayList<>()).add(cell);
+            }
+        }
+    }
+
+    /**
+     * Returns every cell registered in the buckets of the range once, in the order they are found.
+     */
+    List<Integer> getCells(int[] range) {
+        List<Integer> cells = new ArrayList<>();
+        if (null == extent) {
+            return cells;
+        }
+        query++;
+        int lastX = Math.min(range[2], extent[2]);
+        int lastY = Math.min(range[3], extent[3]);
+        for (int x = Math.max(range[0], extent[0]); x <= lastX; x++) {
+            for (int y = Math.max(range[1], extent[1]); y <= lastY; y++) {
+                List<Integer> bucket = buckets.get(key(x, y));
+                if (null == bucket) {
+                    continue;
+                }
+                for (int k: bucket) {
+                    if (found[k] != query) {
+                        found[k] = query;
+                        cells.add(k);
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
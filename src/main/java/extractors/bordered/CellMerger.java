@@ -0,0 +1,67 @@
+package extractors.bordered;
+
+import model.PDFRectangle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges intersecting cells. Every cell is added to each kept cell it intersects, and is kept itself when it
+ * intersects none of them. The kept cells are indexed by a cell grid, so a cell is tested only against the kept
+ * cells near it.
+ */
+final class CellMerger {
+
+    private final List<PDFRectangle> keptCells = new ArrayList<>();
+    private final List<int[]> keptRanges = new ArrayList<>(); // Buckets a kept cell is registered in
+    private final CellGrid grid;
+
+    private CellMerger(List<PDFRectangle> cells) {
+        grid = new CellGrid(cells);
+    }
+
+    /**
+     * Returns the kept cells in the order of the cells. The kept cells are the given ones, grown by the merged cells.
+     */
+    static List<PDFRectangle> merge(List<PDFRectangle> cells) {
+        if (cells.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        CellMerger merger = new CellMerger(cells);
+        List<Integer> grownCells = new ArrayList<>();
+
+        for (PDFRectangle cell: cells) {
+            for (int k: merger.grid.getCells(merger.grid.getRange(cell))) {
+                PDFRectangle keptCell = merger.keptCells.get(k);
+                if (keptCell.intersects(cell)) {
+                    keptCell.add(cell);
+                    grownCells.add(k);
+                }
+            }
+
+            if (grownCells.isEmpty()) {
+                merger.keep(cell);
+            } else {
+                // A grown cell covers its old buckets and maybe some more
+                for (int k: grownCells) {
+                    merger.register(k);
+                }
+                grownCells.clear();
+            }
+        }
+        return merger.keptCells;
+    }
+
+    private void keep(PDFRectangle cell) {
+        keptCells.add(cell);
+        keptRanges.add(null);
+        register(keptCells.size() - 1);
+    }
+
+    private void register(int k) {
+        int[] range = grid.getRange(keptCells.get(k));
+        grid.add(k, range, keptRanges.get(k));
+        keptRanges.set(k, range);
+    }
+}
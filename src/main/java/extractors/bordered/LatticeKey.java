@@ -0,0 +1,67 @@
+package extractors.bordered;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Points as keys packed into a long, one coordinate in the high and one in the low half, so the keys hash and
+ * order as the points without comparing objects. A lattice key holds the coordinates in hundredths of a point,
+ * rounded half up as Utils.round(value, 2) rounds them, and an exact key holds the float coordinates themselves.
+ */
+final class LatticeKey {
+
+    // Below this many hundredths the scaled value is known closer than TIE_MARGIN to the scaled decimal digits
+    private static final double MAX_FAST_HUNDREDTHS = 1e9;
+    private static final double TIE_MARGIN = 1e-6;
+
+    private LatticeKey() {
+    }
+
+    /**
+     * Returns the lattice key of the point ordering by y and then by x.
+     */
+    static long byY(double x, double y) {
+        return pack(hundredths(y), hundredths(x));
+    }
+
+    /**
+     * Returns the lattice key of the point ordering by x and then by y.
+     */
+    static long byX(double x, double y) {
+        return pack(hundredths(x), hundredths(y));
+    }
+
+    /**
+     * Returns the key of the float coordinates, equal for equal coordinates and so for 0.0 and -0.0.
+     */
+    static long exact(float x, float y) {
+        return ((long) Float.floatToIntBits(x + 0.0f) << 32) | (Float.floatToIntBits(y + 0.0f) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the value in hundredths rounded half up, saturated to the int range.
+     */
+    static int hundredths(double value) {
+        double scaled = value * 100;
+        if (Math.abs(scaled) < MAX_FAST_HUNDREDTHS) {
+            double floor = Math.floor(scaled);
+            double fraction = scaled - floor;
+            if (Math.abs(fraction - 0.5) > TIE_MARGIN) {
+                return (int) (fraction < 0.5 ? floor : floor + 1);
+            }
+        }
+        // Near halves the decimal digits of the value decide, undefined values are rejected as Utils.round does
+        BigDecimal rounded = new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP);
+        BigInteger unscaled = rounded.unscaledValue();
+        if (unscaled.bitLength() < Integer.SIZE) {
+            return unscaled.intValue();
+        }
+        return unscaled.signum() < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    }
+
+    private static long pack(int high, int low) {
+        // The low half is biased, so the signed keys order by the low coordinate as well
+        return ((long) high << 32) | ((low ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+}
@@ -5,8 +5,6 @@ import model.Page;
 import model.Ruling;
 import model.TextChunk;
 
-import java.util.Iterator;
-
 public class XRulingCompositionFilter implements BlockCompositionFilter {
 
     @Override
@@ -17,10 +15,8 @@ public class XRulingCompositionFilter implements BlockCompositionFilter {
         double maxY = Math.max(block.getBottom(), textChunk.getBottom());
 
         Page page = block.getPage();
-        Iterator<Ruling> rulings = page.getRulings();
-        while(rulings.hasNext()) {
-            Ruling ruling = rulings.next();
-            if (!ruling.isVertical()) continue;
+        // Only the vertical rulings with minX < x < maxX
+        for (Ruling ruling: page.getVerticalRulings(minX, maxX)) {
             float x = (float) ruling.getStartPoint().getX();
             float y1 = (float) ruling.getStartPoint().getY();
             float y2 = (float) ruling.getEndPoint().getY();
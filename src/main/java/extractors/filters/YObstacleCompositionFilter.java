@@ -4,7 +4,7 @@ import interfaces.BlockCompositionFilter;
 import model.Page;
 import model.TextChunk;
 
-import java.util.Iterator;
+import java.util.List;
 
 public class YObstacleCompositionFilter implements BlockCompositionFilter {
     @Override
@@ -15,10 +15,9 @@ public class YObstacleCompositionFilter implements BlockCompositionFilter {
         final double maxY = textChunk.getBottom();
 
         Page page = block.getPage();
-        Iterator<TextChunk> obstacles = page.getBlocks();
+        List<TextChunk> obstacles = page.getBlocks(minX, minY, maxX, maxY);
 
-        while (obstacles.hasNext()) {
-            TextChunk o = obstacles.next();
+        for (TextChunk o: obstacles) {
 
             final double lt = o.getLeft();
             final double tp = o.getTop();
@@ -5,8 +5,6 @@ import model.Page;
 import model.Ruling;
 import model.TextChunk;
 
-import java.util.Iterator;
-
 public class YRulingCompositionFilter implements BlockCompositionFilter {
     @Override
     public boolean canMerge(TextChunk block, TextChunk textChunk) {
@@ -16,10 +14,8 @@ public class YRulingCompositionFilter implements BlockCompositionFilter {
         double maxY = textChunk.getTop();
 
         Page page = block.getPage();
-        Iterator<Ruling> rulings = page.getRulings();
-        while(rulings.hasNext()) {
-            Ruling ruling = rulings.next();
-            if (!ruling.isHorizontal()) continue;
+        // Only the horizontal rulings with minY < y < maxY
+        for (Ruling ruling: page.getHorizontalRulings(minY, maxY)) {
             float x1 = (float) ruling.getStartPoint().getX();
             float x2 = (float) ruling.getEndPoint().getX();
             float y = (float) ruling.getStartPoint().getY();
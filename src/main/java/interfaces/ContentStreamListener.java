@@ -0,0 +1,64 @@
+package interfaces;
+
+import model.Page;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+
+/**
+ * Receives the events of a single content stream pass over a page. The engine is passed on the page start,
+ * so a listener can read the graphics state while handling the following events.
+ */
+public interface ContentStreamListener {
+
+    default void startPage(PDFStreamEngine engine, PDPage pdPage, Page page) throws IOException {
+    }
+
+    default void endPage(Page page) throws IOException {
+    }
+
+    default void showTextPosition(TextPosition text) {
+    }
+
+    default void beginMarkedContentSequence(COSName tag, COSDictionary properties) {
+    }
+
+    default void endMarkedContentSequence() {
+    }
+
+    default void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException {
+    }
+
+    default void moveTo(float x, float y) throws IOException {
+    }
+
+    default void lineTo(float x, float y) throws IOException {
+    }
+
+    default void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+    }
+
+    default void closePath() throws IOException {
+    }
+
+    default void endPath() throws IOException {
+    }
+
+    default void strokePath() throws IOException {
+    }
+
+    default void fillPath(int windingRule) throws IOException {
+    }
+
+    default void fillAndStrokePath(int windingRule) throws IOException {
+    }
+
+    default void drawImage(PDImageXObject image) throws IOException {
+    }
+}
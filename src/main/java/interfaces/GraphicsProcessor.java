@@ -0,0 +1,40 @@
+package interfaces;
+
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+
+/**
+ * Path and image callbacks of a content stream engine, the same set PDFGraphicsStreamEngine provides.
+ * Points are already transformed by the current transformation matrix.
+ */
+public interface GraphicsProcessor {
+
+    void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException;
+
+    void moveTo(float x, float y) throws IOException;
+
+    void lineTo(float x, float y) throws IOException;
+
+    void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException;
+
+    Point2D getCurrentPoint() throws IOException;
+
+    void closePath() throws IOException;
+
+    /**
+     * Sets the current path to be intersected with the clipping path once the path is painted or ended.
+     */
+    void clip(int windingRule) throws IOException;
+
+    void endPath() throws IOException;
+
+    void strokePath() throws IOException;
+
+    void fillPath(int windingRule) throws IOException;
+
+    void fillAndStrokePath(int windingRule) throws IOException;
+
+    void drawImage(PDImageXObject image) throws IOException;
+}
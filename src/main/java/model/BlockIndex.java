@@ -0,0 +1,162 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over the page holding the text blocks by their bounds, along with the number of blocks
+ * starting at every chunk order. A block is kept in every cell its bounds cover, positions outside the page
+ * fall into the border cells. Blocks are tracked by identity, since their bounds (and so equals and hashCode)
+ * change while they are composed.
+ */
+final class BlockIndex {
+
+    private static final double CELL_SIZE = 24;
+
+    private final double left;
+    private final double top;
+    private final int columns;
+    private final int rows;
+    private final List<List<TextChunk>> cells;
+    private final Map<TextChunk, int[]> cellRanges; // [first column, first row, last column, last row]
+    private final Map<TextChunk, Integer> startOrders;
+    private final Map<Integer, Integer> startOrderCounts;
+
+    BlockIndex(double left, double top, double width, double height) {
+        this.left = left;
+        this.top = top;
+        this.columns = cellCount(width);
+        this.rows = cellCount(height);
+        this.cells = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            cells.add(new ArrayList<>(4));
+        }
+        this.cellRanges = new IdentityHashMap<>();
+        this.startOrders = new IdentityHashMap<>();
+        this.startOrderCounts = new HashMap<>();
+    }
+
+    private static int cellCount(double size) {
+        if (!(size > 0)) {
+            return 1;
+        }
+        return (int) Math.min(Math.ceil(size / CELL_SIZE), 1024);
+    }
+
+    private int column(double x) {
+        return clamp((int) Math.floor((x - left) / CELL_SIZE), columns);
+    }
+
+    private int row(double y) {
+        return clamp((int) Math.floor((y - top) / CELL_SIZE), rows);
+    }
+
+    private static int clamp(int value, int count) {
+        return value < 0 ? 0 : Math.min(value, count - 1);
+    }
+
+    private static boolean isNaN(TextChunk block) {
+        return Double.isNaN(block.getLeft()) || Double.isNaN(block.getTop())
+                || Double.isNaN(block.getRight()) || Double.isNaN(block.getBottom());
+    }
+
+    private int[] cellRange(TextChunk block) {
+        // Blocks with undefined bounds intersect nothing and are not put into cells
+        if (isNaN(block)) {
+            return null;
+        }
+        return new int[] {
+                column(Math.min(block.getLeft(), block.getRight())),
+                row(Math.min(block.getTop(), block.getBottom())),
+                column(Math.max(block.getLeft(), block.getRight())),
+                row(Math.max(block.getTop(), block.getBottom()))
+        };
+    }
+
+    void add(TextChunk block) {
+        if (cellRanges.containsKey(block)) {
+            return;
+        }
+        int[] range = cellRange(block);
+        if (range != null) {
+            for (int r = range[1]; r <= range[3]; r++) {
+                for (int c = range[0]; c <= range[2]; c++) {
+                    cells.get(r * columns + c).add(block);
+                }
+            }
+        }
+        cellRanges.put(block, range);
+        startOrders.put(block, block.getStartOrder());
+        startOrderCounts.merge(block.getStartOrder(), 1, Integer::sum);
+    }
+
+    void remove(TextChunk block) {
+        if (!cellRanges.containsKey(block)) {
+            return;
+        }
+        int[] range = cellRanges.remove(block);
+        startOrderCounts.computeIfPresent(startOrders.remove(block), (order, count) -> count > 1 ? count - 1 : null);
+        if (range != null) {
+            for (int r = range[1]; r <= range[3]; r++) {
+                for (int c = range[0]; c <= range[2]; c++) {
+                    List<TextChunk> cell = cells.get(r * columns + c);
+                    for (int i = 0; i < cell.size(); i++) {
+                        if (cell.get(i) == block) {
+                            cell.remove(i);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    void update(TextChunk block) {
+        if (!cellRanges.containsKey(block)) {
+            return;
+        }
+        // A growing block mostly stays within its cells
+        if (Arrays.equals(cellRanges.get(block), cellRange(block))
+                && startOrders.get(block) == block.getStartOrder()) {
+            return;
+        }
+        remove(block);
+        add(block);
+    }
+
+    int countByStartOrder(int startOrder) {
+        return startOrderCounts.getOrDefault(startOrder, 0);
+    }
+
+    /**
+     * Returns each block whose bounds may intersect the area once. The caller tests the exact condition.
+     */
+    List<TextChunk> query(double minX, double minY, double maxX, double maxY) {
+        List<TextChunk> result = new ArrayList<>();
+        if (Double.isNaN(minX) || Double.isNaN(minY) || Double.isNaN(maxX) || Double.isNaN(maxY)) {
+            return result;
+        }
+
+        int firstColumn = column(Math.min(minX, maxX));
+        int lastColumn = column(Math.max(minX, maxX));
+        int firstRow = row(Math.min(minY, maxY));
+        int lastRow = row(Math.max(minY, maxY));
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                for (TextChunk block: cells.get(r * columns + c)) {
+                    // A block covering several cells is reported from the first cell both ranges share
+                    int[] range = cellRanges.get(block);
+                    if (c == Math.max(range[0], firstColumn) && r == Math.max(range[1], firstRow)) {
+                        result.add(block);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
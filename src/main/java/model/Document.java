@@ -1,57 +1,60 @@
 package model;
 
-import org.apache.fontbox.util.BoundingBox;
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.cos.*;
 import org.apache.pdfbox.pdmodel.*;
 import org.apache.pdfbox.pdmodel.common.PDNameTreeNode;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
-import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkedContentReference;
-import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
-import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureNode;
-import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDMarkedContent;
-import org.apache.pdfbox.pdmodel.font.*;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
 import org.apache.pdfbox.pdmodel.interactive.action.PDActionURI;
-import org.apache.pdfbox.text.PDFMarkedContentExtractor;
 import org.apache.pdfbox.text.PDFTextStripperByArea;
-import org.apache.pdfbox.text.TextPosition;
-import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationFileAttachment;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDFileSpecification;
 import pdreaders.ImageExtractor;
+import pdreaders.MarkedContentExtractor;
 import pdreaders.PDContentExtractor;
 import pdreaders.PdfBoxFinder;
+import pdreaders.RulingMode;
+import pdreaders.VectorRulingExtractor;
 import pdreaders.VisibleRulingExtractor;
+import utils.Config;
+import utils.PageExecutor;
+import utils.PdfLoader;
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.RenderedImage;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.io.FileOutputStream;
 
 public class Document implements Closeable {
     private final File sourceFile;
     private final PDDocument pdDocument;
+    private final boolean ownsPDDocument;
     private final List<Page> pages = new ArrayList<>();
-    private final PDContentExtractor contentExtractor;
-    private final VisibleRulingExtractor visibleRulingExtractor;
-    private final ImageExtractor imageExtractor;
-    private int index = 0;
+    private final PageWorker pageWorker;
+    private final Config config;
+    private final int threads;
+    // Worker pool shared by the page steps, created on first use and shut down when the document is closed
+    private ExecutorService executor;
+    private final int startPage;
+    private final int endPage;
+    private final StructureIndex structureIndex;
     private int pageCnt = 0;
     Map<PDPage, Page> taggedPages = new HashMap<>();
     Map<Integer, Rectangle2D.Float> GOSTFrames = new HashMap<>();
@@ -59,42 +62,88 @@ public class Document implements Closeable {
 
     @Override
     public void close() throws IOException {
-        pdDocument.close();
+        if (null != executor) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        // A document loaded from a session leaves the PDF to the session
+        if (ownsPDDocument) {
+            pdDocument.close();
+        }
     }
 
     public static Document load(Path path, int startPage, int endPage) throws IllegalArgumentException, IOException {
+        return load(path, startPage, endPage, new Config.Builder().createConfig());
+    }
+
+    /**
+     * Loads the pages from startPage to endPage. When the config has more than one thread, the pages are
+     * extracted concurrently; one worker reads the PDF of the session and every other worker opens its own
+     * copy, so no PDFBox object is shared between threads. A non-positive number of threads means one thread
+     * per available processor. The document has to be closed to stop its worker threads.
+     */
+    public static Document load(Path path, int startPage, int endPage, Config config) throws IllegalArgumentException, IOException {
+        try (DocumentSession session = DocumentSession.open(path, config)) {
+            if (null == session)
+                return null;
+            return load(session, startPage, endPage, config);
+        }
+    }
+
+    /**
+     * Loads the pages from the PDF of the session, which stays open for the caller.
+     */
+    public static Document load(DocumentSession session, int startPage, int endPage, Config config) throws IOException {
+        int lastPageIndex = session.getPageCount();
+        startPage = startPage <= 0 ? 0: startPage;
+        endPage = endPage > lastPageIndex - 1 ? lastPageIndex - 1 : endPage;
+        Document document = new Document(session.getFile(), session.getPDDocument(), false, startPage, endPage,
+                lastPageIndex, config, true);
+        //document.extractImages();
+        //document.extractAttachments(path);
+        return document;
+    }
+
+    /**
+     * Opens the document without extracting any page. The pages from startPage to endPage are extracted one
+     * at a time by processPages, and the document has to be closed afterwards.
+     */
+    public static Document open(Path path, int startPage, int endPage, Config config) throws IllegalArgumentException, IOException {
+        DocumentSession session = DocumentSession.open(path, config);
+        if (null == session) {
+            return null;
+        }
 
-        if (path == null) {
-            throw new IllegalArgumentException("The path to a PDF document cannot be null");
+        try {
+            return open(session, startPage, endPage, config, true);
+        } catch (IOException | RuntimeException e) {
+            session.close();
+            throw e;
         }
+    }
 
-        else {
+    /**
+     * Opens the document on the PDF of the session, closing the document leaves the session open.
+     */
+    public static Document open(DocumentSession session, int startPage, int endPage, Config config) throws IOException {
+        return open(session, startPage, endPage, config, false);
+    }
 
-            File file = path.toFile();
-
-            if (file.exists() && file.canRead()) {
-                PDDocument pdDocument = Loader.loadPDF(path.toFile());
-                int lastPageIndex = pdDocument.getNumberOfPages();
-                startPage = startPage <= 0 ? 0: startPage;
-                endPage = endPage > lastPageIndex - 1 ? lastPageIndex - 1 : endPage;
-                Document document = new Document(file, pdDocument, startPage, endPage, pdDocument.getNumberOfPages());
-                //document.extractImages();
-                //document.extractAttachments(path);
-                document.parseTags();
-                document.extractLines();
-                document.annotateLines();
-                pdDocument.close();
-                return document;
-            } else
-                return null;
-        }
+    private static Document open(DocumentSession session, int startPage, int endPage, Config config,
+                                 boolean ownsPDDocument) throws IOException {
+        int lastPageIndex = session.getPageCount();
+        startPage = startPage <= 0 ? 0: startPage;
+        endPage = endPage > lastPageIndex - 1 ? lastPageIndex - 1 : endPage;
+        return new Document(session.getFile(), session.getPDDocument(), ownsPDDocument, startPage, endPage,
+                lastPageIndex, config, false);
     }
 
     public void setBBoxes(Map<Integer, Rectangle2D.Float> GOSTFrames){
         this.GOSTFrames.putAll(GOSTFrames);
     }
 
-    private Document(File file, PDDocument pdDocument, int startPage, int endPage, int pageCnt) throws IllegalArgumentException, IOException {
+    private Document(File file, PDDocument pdDocument, boolean ownsPDDocument, int startPage, int endPage,
+                     int pageCnt, Config config, boolean createPages) throws IllegalArgumentException, IOException {
         if (null == pdDocument) {
             throw new IllegalArgumentException("PDDocument cannot be null");
         }
@@ -102,27 +151,149 @@ public class Document implements Closeable {
             this.pageCnt = pageCnt;
             this.sourceFile = file;
             this.pdDocument = pdDocument;
-            contentExtractor = new PDContentExtractor(this.pdDocument);
-            visibleRulingExtractor = new VisibleRulingExtractor(this.pdDocument);
-            imageExtractor = new ImageExtractor(this.pdDocument, this.sourceFile);
+            this.ownsPDDocument = ownsPDDocument;
+            this.config = config;
+            this.threads = Math.max(1, Math.min(PageExecutor.resolveThreads(config.getThreads()), endPage - startPage + 1));
+            this.startPage = startPage;
+            this.endPage = endPage;
+            pageWorker = new PageWorker(this.pdDocument, this.sourceFile, config);
+            // The structure tree is indexed once, so every page is tagged right after it is extracted
+            structureIndex = StructureIndex.create(this.pdDocument);
+        }
+        if (createPages) {
+            createPages(startPage, endPage);
         }
-        createPages(startPage, endPage);
     }
 
     public int getPageCnt(){
         return this.pageCnt;
     }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the worker pool of the document, or null when the pages are processed on the calling thread.
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (threads <= 1) {
+            return null;
+        }
+        if (null == executor) {
+            executor = PageExecutor.newPool(threads);
+        }
+        return executor;
+    }
+
     private void createPages(int startPage, int endPage) throws IOException {
-        for (int i = startPage; i <= endPage; i++) {
-            Page page = createPage(i);
+        List<Integer> indexes = pageIndexes(startPage, endPage);
+
+        List<Page> created;
+        BlockingQueue<PageWorker> workers = openWorkers();
+        try {
+            created = PageExecutor.invokeAll(indexes, getExecutor(), i -> createPage(workers, i, false));
+        } finally {
+            closeWorkers(workers);
+        }
+
+        for (int i = 0; i < indexes.size(); i++) {
+            Page page = created.get(i);
             pages.add(page);
-            taggedPages.put(pdDocument.getPage(i), page);
+            taggedPages.put(pdDocument.getPage(indexes.get(i)), page);
         }
     }
 
-    private Page createPage(int pageIndex) throws IOException {
-        PDDocument pdDocument = this.getPdDocument();
-        PDPage pdPage = pdDocument.getPage(pageIndex);
+    /**
+     * Extracts the pages of an opened document one at a time: every page is passed through the task on the
+     * worker threads and then to the sink in page order. The document does not keep the pages, so a page is
+     * released as soon as the sink is done with it. At most the page window of the config pages are in progress
+     * at once, and fewer when the heap is filled above the heap ceiling of the config. Every page gets its own
+     * resource cache, so the fonts and images PDFBox loads for a page are released with it. The parsed objects
+     * of the PDF itself are kept by PDFBox until the document is closed.
+     */
+    public void processPages(PageExecutor.Task<Page, Page> task, PageExecutor.Sink<Page> sink) throws IOException {
+        List<Integer> indexes = pageIndexes(startPage, endPage);
+
+        BlockingQueue<PageWorker> workers = openWorkers();
+        try {
+            int window = Math.max(config.getPageWindow(), threads);
+            PageExecutor.stream(indexes, getExecutor(), window, config.getHeapCeiling(), i -> {
+                Page page = createPage(workers, i, true);
+                return null == page ? null : task.apply(page);
+            }, page -> {
+                if (null != page) {
+                    sink.accept(page);
+                }
+            });
+        } finally {
+            closeWorkers(workers);
+        }
+    }
+
+    private static List<Integer> pageIndexes(int startPage, int endPage) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = startPage; i <= endPage; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns a worker per thread. The first one is the worker of the document's own PDF, the others get their
+     * own copy of the PDF, so no PDFBox object is shared between threads.
+     */
+    private BlockingQueue<PageWorker> openWorkers() throws IOException {
+        BlockingQueue<PageWorker> workers = new ArrayBlockingQueue<>(threads);
+        workers.add(pageWorker);
+        try {
+            for (int i = 1; i < threads; i++) {
+                workers.add(new PageWorker(PdfLoader.load(sourceFile, config), sourceFile, config));
+            }
+        } catch (IOException | RuntimeException e) {
+            closeWorkers(workers);
+            throw e;
+        }
+        return workers;
+    }
+
+    private void closeWorkers(BlockingQueue<PageWorker> workers) throws IOException {
+        for (PageWorker worker: workers) {
+            if (worker != pageWorker) {
+                worker.pdDocument.close();
+            }
+        }
+    }
+
+    private static PageWorker take(BlockingQueue<PageWorker> workers) throws IOException {
+        try {
+            return workers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Page processing was interrupted");
+        }
+    }
+
+    private Page createPage(BlockingQueue<PageWorker> workers, int pageIndex, boolean ownResources)
+            throws IOException {
+        PageWorker worker = take(workers);
+        try {
+            if (ownResources) {
+                // The page reads its resources through the cache the PDF has when the page is got
+                worker.pdDocument.setResourceCache(new DefaultResourceCache());
+            }
+            return createPage(worker, pageIndex);
+        } finally {
+            workers.add(worker);
+        }
+    }
+
+    private Page createPage(PageWorker worker, int pageIndex) throws IOException {
+        PDPage pdPage = worker.pdDocument.getPage(pageIndex);
 
         if (null != pdPage) {
             PDRectangle rect = pdPage.getBBox();
@@ -143,19 +314,45 @@ public class Document implements Closeable {
                 System.err.println("WARNING: The page is not processed because its paper orientation is not portrait");
             }
             */
-            contentExtractor.process(page);
-            imageExtractor.process(page);
+            // Text, rulings, images and marked content are collected in one pass over the content stream
+            worker.contentExtractor.process(page);
             //boxFinder.processPage(page.getPDPage());
-            // Move to extractLines method
-            //visibleRulingExtractor.process(page);
+            if (config.getRulingMode() == RulingMode.RASTER) {
+                worker.visibleRulingExtractor.process(page);
+            } else if (config.getRulingMode() == RulingMode.AUTO && page.getListVisibleRulings().isEmpty()
+                    && !page.getImages().isEmpty()) {
+                // The rulings may be drawn as images, only rendering can find them
+                worker.visibleRulingExtractor.process(page);
+            }
+            if (null != structureIndex) {
+                addTags(page, pdPage);
+            }
+            annotateLines(page);
             return page;
         }
         return null;
     }
 
-    public void extractLines() throws IOException {
-        for (Page page: pages) {
-            visibleRulingExtractor.process(page);
+    /**
+     * A set of page extractors bound to one PDDocument. The extractors keep per-page state,
+     * so a worker is used by one thread at a time.
+     */
+    private static class PageWorker {
+        private final PDDocument pdDocument;
+        private final PDContentExtractor contentExtractor;
+        private final VisibleRulingExtractor visibleRulingExtractor;
+
+        private PageWorker(PDDocument pdDocument, File sourceFile, Config config) throws IOException {
+            this.pdDocument = pdDocument;
+            contentExtractor = new PDContentExtractor(pdDocument, config.getTextDetails());
+            contentExtractor.addListener(new ImageExtractor(sourceFile));
+            if (pdDocument.getDocumentCatalog().getStructureTreeRoot() != null) {
+                contentExtractor.addListener(new MarkedContentExtractor());
+            }
+            if (config.getRulingMode() != RulingMode.RASTER) {
+                contentExtractor.addListener(new VectorRulingExtractor());
+            }
+            visibleRulingExtractor = new VisibleRulingExtractor(pdDocument);
         }
     }
 
@@ -187,16 +384,20 @@ public class Document implements Closeable {
     }
     public void annotateLines(){
         for (Page page: pages) {
-            for (Tag tag: page.getTags()) {
-                for (TextChunk line : page.getTextLines()) {
-                    if (line.intersects(tag.getRect()) && !tag.getName().toString().equals("LINK")) {
-                        line.setMetadata(tag.getName().toString());
-                    }
-                    for (TextChunk.TextLine word: line.getWords()) {
-                        if (word.getBbox().intersects(tag.getRect()) && tag.getName().toString().equals("LINK")) {
-                            word.setMetadata(tag.getName().toString());
-                            word.setUrl(tag.getUrl());
-                        }
+            annotateLines(page);
+        }
+    }
+
+    private void annotateLines(Page page) {
+        for (Tag tag: page.getTags()) {
+            for (TextChunk line : page.getTextLines()) {
+                if (line.intersects(tag.getRect()) && !tag.getName().toString().equals("LINK")) {
+                    line.setMetadata(tag.getName().toString());
+                }
+                for (TextChunk.TextLine word: line.getWords()) {
+                    if (word.intersects(tag.getRect()) && tag.getName().toString().equals("LINK")) {
+                        word.setMetadata(tag.getName().toString());
+                        word.setUrl(tag.getUrl());
                     }
                 }
             }
@@ -311,151 +512,58 @@ public class Document implements Closeable {
         }
         return embeddedFile;
     }
-    public void parseTags() throws IOException {
-
-        Map<PDPage, Map<Integer, PDMarkedContent>> markedContents = new HashMap<>();
-        Map<PDPage, Rectangle2D> boxes;
-        boxes = new HashMap<PDPage, Rectangle2D>();
-
-        for (Page page : this.getPages()) {
-            PDFMarkedContentExtractor extractor = new PDFMarkedContentExtractor();
-            extractor.processPage(page.getPDPage());
-
-            Map<Integer, PDMarkedContent> theseMarkedContents = new HashMap<>();
-            markedContents.put(page.getPDPage(), theseMarkedContents);
-            for (PDMarkedContent markedContent : extractor.getMarkedContents()) {
-                addToMap(theseMarkedContents, markedContent);
-            }
-        }
-
-        //processImagesFromPDF(document);
-
-        PDStructureNode root = pdDocument.getDocumentCatalog().getStructureTreeRoot();
-
-        if (root == null)
-            return;
-
-        //Map<PDPage, PDPageContentStream> visualizations = new HashMap<>();
-        boxes = showStructure(this.pdDocument, root, markedContents);
-
-        for (int i = 0; i < pdDocument.getNumberOfPages(); i ++) {
-            PDPage currPage = pdDocument.getPage(i);
-            Page page = taggedPages.get(currPage);
-            if (page == null) continue;
-/*            for (Tag tag : page.getTags()) {
-                if (tag.getName().equals(TagsName.FOOTNOTE))
-                    System.out.println(tag.getName());
-            }*/
-        }
-        //pdDocument.close();
-    }
-
-    void addToMap(Map<Integer, PDMarkedContent> theseMarkedContents, PDMarkedContent markedContent) {
-        theseMarkedContents.put(markedContent.getMCID(), markedContent);
-        for (Object object : markedContent.getContents()) {
-            if (object instanceof PDMarkedContent) {
-                addToMap(theseMarkedContents, (PDMarkedContent)object);
+    /**
+     * Adds the tags of the structure elements having marked content on the page. The marked content boxes
+     * are not needed afterwards and are dropped.
+     */
+    private void addTags(Page p, PDPage page) throws IOException {
+        List<Map.Entry<String, Rectangle2D>> boxes = structureIndex.getBoxes(p.getIndex(), p.getMarkedContentBoxes());
+        p.setMarkedContentBoxes(null);
+
+        for (Map.Entry<String, Rectangle2D> entry: boxes) {
+            String structType = entry.getKey();
+            Rectangle2D box = entry.getValue();
+
+            if (structType.equals("Footnote")) {
+                Rectangle2D rec = new Rectangle2D.Float((float)box.getMinX(),
+                        (float)page.getBBox().getHeight() - (float)box.getMaxY(),
+                        (float)box.getWidth(), (float)box.getHeight());
+                p.addTag(new Tag(TagsName.FOOTNOTE, rec, ""));
+            } else if (structType.equals("RunningTitle")) {
+                Rectangle2D rec = new Rectangle2D.Float((float)box.getMinX(),
+                        (float)page.getBBox().getHeight() - (float)box.getMaxY(),
+                        (float)box.getWidth(), (float)box.getHeight());
+                p.addTag(new Tag(TagsName.PAGE_ID, rec, ""));
+            } else if (structType.equals("Link")) {
+                Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
+                        (float) page.getBBox().getHeight() - (float) box.getMaxY(),
+                        (float) box.getWidth(), (float) box.getHeight());
+                String url = getLink(rec, page);
+                p.addTag(new Tag(TagsName.LINK, rec, url));
+            } else if (structType.equals("LBody")) {
+                Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
+                        (float) page.getBBox().getHeight() - (float) box.getMaxY(),
+                        (float) box.getWidth(), (float) box.getHeight());
+                p.addTag(new Tag(TagsName.LITEM, rec, ""));
+            } else if (structType.equals("Chart")) {
+                Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
+                        (float) page.getBBox().getHeight() - (float) box.getMaxY(),
+                        (float) box.getWidth(), (float) box.getHeight());
+                p.addTag(new Tag(TagsName.DIAGRAM, rec, ""));
+            } else if (structType.equals("H1")) {
+                Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
+                        (float) page.getBBox().getHeight() - (float) box.getMaxY(),
+                        (float) box.getWidth(), (float) box.getHeight());
+                p.addTag(new Tag(TagsName.HEADER, rec, ""));
+            } else if (structType.equals("TOCI")) {
+                Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
+                        (float) page.getBBox().getHeight() - (float) box.getMaxY(),
+                        (float) box.getWidth(), (float) box.getHeight());
+                p.addTag(new Tag(TagsName.TOCITEM, rec, ""));
             }
         }
     }
 
-    Map<PDPage, Rectangle2D> showStructure(PDDocument document,
-                                           PDStructureNode node, Map<PDPage, Map<Integer,
-            PDMarkedContent>> markedContents) throws IOException {
-        Map<PDPage, Rectangle2D> boxes = null;
-        Map<PDPage, Rectangle2D> result = new HashMap<>();
-
-        String structType = null;
-        PDPage page = null;
-        if (node instanceof PDStructureElement) {
-            PDStructureElement element = (PDStructureElement) node;
-            structType = element.getStructureType();
-            page = element.getPage();
-        }
-        Map<Integer, PDMarkedContent> theseMarkedContents = markedContents.get(page);
-        int indexHere = index++;
-        for (Object object: node.getKids()) {
-            if (object instanceof COSArray) {
-                for (COSBase base : (COSArray) object) {
-                    if (base instanceof COSDictionary) {
-                        boxes = union(boxes, showStructure(document, PDStructureNode.create((COSDictionary) base), markedContents));
-                    } else if (base instanceof COSNumber) {
-                        boxes = union(boxes, page, this.showContent(((COSNumber)base).intValue(), theseMarkedContents));
-                    }
-                }
-            } else if (object instanceof PDStructureNode) {
-                boxes = union(boxes, showStructure(document, (PDStructureNode) object, markedContents));
-            } else if (object instanceof Integer) {
-                boxes = union(boxes, page, this.showContent((Integer)object, theseMarkedContents));
-            } else if (object instanceof PDMarkedContentReference) {
-                page = ((PDMarkedContentReference) object).getPage();
-                theseMarkedContents = markedContents.get(page);
-                boxes = union(boxes, page, showContent(((PDMarkedContentReference) object).getMCID(), theseMarkedContents));
-            }
-        }
-
-
-        if (boxes != null && structType != null) {
-            Color color = new Color((int)(Math.random() * 256), (int)(Math.random() * 256), (int)(Math.random() * 256));
-
-            for (Map.Entry<PDPage, Rectangle2D> entry : boxes.entrySet()) {
-                page = entry.getKey();
-                Rectangle2D box = entry.getValue();
-
-                if (box == null) {
-                    continue;
-                }
-
-                result.put(page, box);
-
-                Page p = taggedPages.get(page);
-
-                if (p == null) {
-                    continue;
-                }
-
-                if (structType.equals("Footnote")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float)box.getMinX(),
-                            (float)page.getBBox().getHeight() - (float)box.getMaxY(),
-                            (float)box.getWidth(), (float)box.getHeight());
-                    p.addTag(new Tag(TagsName.FOOTNOTE, rec, ""));
-                } else if (structType.equals("RunningTitle")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float)box.getMinX(),
-                            (float)page.getBBox().getHeight() - (float)box.getMaxY(),
-                            (float)box.getWidth(), (float)box.getHeight());
-                    p.addTag(new Tag(TagsName.PAGE_ID, rec, ""));
-                } else if (structType.equals("Link")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
-                            (float) page.getBBox().getHeight() - (float) box.getMaxY(),
-                            (float) box.getWidth(), (float) box.getHeight());
-                    String url = getLink(rec, page);
-                    p.addTag(new Tag(TagsName.LINK, rec, url));
-                } else if (structType.equals("LBody")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
-                            (float) page.getBBox().getHeight() - (float) box.getMaxY(),
-                            (float) box.getWidth(), (float) box.getHeight());
-                    p.addTag(new Tag(TagsName.LITEM, rec, ""));
-                } else if (structType.equals("Chart")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
-                            (float) page.getBBox().getHeight() - (float) box.getMaxY(),
-                            (float) box.getWidth(), (float) box.getHeight());
-                    p.addTag(new Tag(TagsName.DIAGRAM, rec, ""));
-                } else if (structType.equals("H1")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
-                            (float) page.getBBox().getHeight() - (float) box.getMaxY(),
-                            (float) box.getWidth(), (float) box.getHeight());
-                    p.addTag(new Tag(TagsName.HEADER, rec, ""));
-                } else if (structType.equals("TOCI")) {
-                    Rectangle2D rec = new Rectangle2D.Float((float) box.getMinX(),
-                            (float) page.getBBox().getHeight() - (float) box.getMaxY(),
-                            (float) box.getWidth(), (float) box.getHeight());
-                    p.addTag(new Tag(TagsName.TOCITEM, rec, ""));
-                }
-            }
-        }
-        return result;
-    }
-
     private String getLink(Rectangle2D rec, PDPage page) throws IOException {
         String link = "";
         List<PDAnnotation> annotations = page.getAnnotations();
@@ -492,122 +600,6 @@ public class Document implements Closeable {
         }
         return null;
     }
-    private Rectangle2D showContent(int mcid, Map<Integer, PDMarkedContent> theseMarkedContents) throws IOException {
-        Rectangle2D box = null;
-        PDMarkedContent markedContent = theseMarkedContents != null ? theseMarkedContents.get(mcid) : null;
-        List<Object> contents = markedContent != null ? markedContent.getContents() : Collections.emptyList();
-        StringBuilder textContent =  new StringBuilder();
-        for (Object object : contents) {
-            if (object instanceof TextPosition) {
-                TextPosition textPosition = (TextPosition)object;
-                textContent.append(textPosition.getUnicode());
-
-                int[] codes = textPosition.getCharacterCodes();
-                if (codes.length != 1) {
-                } else {
-                    box = union(box, calculateGlyphBounds(textPosition.getTextMatrix(), textPosition.getFont(), codes[0]).getBounds2D());
-                }
-            } else if (object instanceof PDMarkedContent) {
-                PDMarkedContent thisMarkedContent = (PDMarkedContent) object;
-                box = union(box, showContent(thisMarkedContent.getMCID(), theseMarkedContents));
-            } else {
-            }
-        }
-        return box;
-    }
-
-    @SafeVarargs
-    final Map<PDPage, Rectangle2D> union(Map<PDPage, Rectangle2D>... maps) {
-        Map<PDPage, Rectangle2D> result = null;
-        for (Map<PDPage, Rectangle2D> map : maps) {
-            if (map != null) {
-                if (result != null) {
-                    for (Map.Entry<PDPage, Rectangle2D> entry : map.entrySet()) {
-                        PDPage page = entry.getKey();
-                        Rectangle2D rectangle = union(result.get(page), entry.getValue());
-                        if (rectangle != null)
-                            result.put(page, rectangle);
-                    }
-                } else {
-                    result = map;
-                }
-            }
-        }
-        return result;
-    }
-
-    Map<PDPage, Rectangle2D> union(Map<PDPage, Rectangle2D> map, PDPage page, Rectangle2D rectangle) {
-       if (map == null) {
-            map = new HashMap<>();
-        }
-        map.put(page, union(map.get(page), rectangle));
-        return map;
-    }
-
-    Rectangle2D union(Rectangle2D... rectangles) {
-        Rectangle2D box = null;
-        for (Rectangle2D rectangle : rectangles) {
-            if (rectangle != null) {
-                if (box != null)
-                    box.add(rectangle);
-                else
-                    box = rectangle;
-            }
-        }
-        return box;
-    }
-
-    private Shape calculateGlyphBounds(Matrix textRenderingMatrix, PDFont font, int code) throws IOException {
-        GeneralPath path = null;
-        AffineTransform at = textRenderingMatrix.createAffineTransform();
-        at.concatenate(font.getFontMatrix().createAffineTransform());
-        if (font instanceof PDType3Font) {
-
-            PDType3Font t3Font = (PDType3Font) font;
-            PDType3CharProc charProc = t3Font.getCharProc(code);
-            if (charProc != null) {
-                BoundingBox fontBBox = t3Font.getBoundingBox();
-                PDRectangle glyphBBox = charProc.getGlyphBBox();
-                if (glyphBBox != null) {
-                    glyphBBox.setLowerLeftX(Math.max(fontBBox.getLowerLeftX(), glyphBBox.getLowerLeftX()));
-                    glyphBBox.setLowerLeftY(Math.max(fontBBox.getLowerLeftY(), glyphBBox.getLowerLeftY()));
-                    glyphBBox.setUpperRightX(Math.min(fontBBox.getUpperRightX(), glyphBBox.getUpperRightX()));
-                    glyphBBox.setUpperRightY(Math.min(fontBBox.getUpperRightY(), glyphBBox.getUpperRightY()));
-                    path = glyphBBox.toGeneralPath();
-                }
-            }
-        }
-        else if (font instanceof PDVectorFont) {
-            PDVectorFont vectorFont = (PDVectorFont) font;
-            path = vectorFont.getPath(code);
-
-            if (font instanceof PDTrueTypeFont) {
-                PDTrueTypeFont ttFont = (PDTrueTypeFont) font;
-                int unitsPerEm = ttFont.getTrueTypeFont().getHeader().getUnitsPerEm();
-                at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
-            }
-            if (font instanceof PDType0Font) {
-                PDType0Font t0font = (PDType0Font) font;
-                if (t0font.getDescendantFont() instanceof PDCIDFontType2) {
-                    int unitsPerEm = ((PDCIDFontType2) t0font.getDescendantFont()).getTrueTypeFont().getHeader().getUnitsPerEm();
-                    at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
-                }
-            }
-        }
-        else if (font instanceof PDSimpleFont) {
-            PDSimpleFont simpleFont = (PDSimpleFont) font;
-            String name = simpleFont.getEncoding().getName(code);
-            path = simpleFont.getPath(name);
-        } else {
-            //System.out.println("Unknown font class: " + font.getClass());
-        }
-        if (path == null) {
-            return null;
-        }
-
-        return at.createTransformedShape(path.getBounds2D());
-    }
-
     public void processImagesFromPDF(PDDocument document) throws IOException {
         List<RenderedImage> images = new ArrayList<>();
         for (PDPage page : document.getPages()) {
@@ -0,0 +1,56 @@
+package model;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import utils.Config;
+import utils.PdfLoader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A PDF file parsed once. The page count, the frames, the extraction and the debug output of a document are
+ * all read from the same PDDocument, which stays open until the session is closed.
+ */
+public class DocumentSession implements Closeable {
+    private final File file;
+    private final PDDocument pdDocument;
+
+    private DocumentSession(File file, PDDocument pdDocument) {
+        this.file = file;
+        this.pdDocument = pdDocument;
+    }
+
+    /**
+     * Parses the file, or returns null when it cannot be read.
+     */
+    public static DocumentSession open(Path path, Config config) throws IllegalArgumentException, IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("The path to a PDF document cannot be null");
+        }
+
+        File file = path.toFile();
+        if (!file.exists() || !file.canRead()) {
+            return null;
+        }
+        return new DocumentSession(file, PdfLoader.load(file, config));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public PDDocument getPDDocument() {
+        return pdDocument;
+    }
+
+    public int getPageCount() {
+        return pdDocument.getNumberOfPages();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pdDocument.close();
+    }
+}
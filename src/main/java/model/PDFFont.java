@@ -1,14 +1,28 @@
 package model;
 
+/**
+ * A font with its size and style. Fonts do not change, so equal fonts are shared by the chunks drawn with them.
+ */
 public class PDFFont {
-    private String name;
-    private float height;
-    private boolean bold;
-    private boolean italic;
-    private float fontSize;
+    private final String name;
+    private final float height;
+    private final boolean bold;
+    private final boolean italic;
+    private final float fontSize;
 
-    public void setFontSize(float fontSize) {
+    public PDFFont(String name, float fontSize, float height, boolean bold, boolean italic) {
+        this.name = name;
         this.fontSize = fontSize;
+        this.height = height;
+        this.bold = bold;
+        this.italic = italic;
+    }
+
+    /**
+     * Returns a font of this size with the name, height and style of the given font.
+     */
+    public PDFFont withStyleOf(PDFFont font) {
+        return new PDFFont(font.name, fontSize, font.height, font.bold, font.italic);
     }
 
     public float getFontSize() {
@@ -19,18 +33,10 @@ public class PDFFont {
         return this.name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public float getHeight() {
         return this.height;
     }
 
-    public void setHeight(float height) {
-        this.height = height;
-    }
-
     public boolean isNormal() {
         return !(this.bold || this.italic);
     }
@@ -42,21 +48,10 @@ public class PDFFont {
         return this.bold;
     }
 
-    /**
-     * @param bold the bold to set
-     */
-    public void setBold(boolean bold) {
-        this.bold = bold;
-    }
-
     public boolean isItalic() {
         return this.italic;
     }
 
-    public void setItalic(boolean italic) {
-        this.italic = italic;
-    }
-
     @Override
     public String toString() {
         String sName = "\"" + this.name + "\"";
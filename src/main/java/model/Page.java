@@ -19,9 +19,12 @@ public class Page extends PDFRectangle {
 
     // Text content
     private final java.util.List<TextChunk> chunks; // Original text chunks extracted from a PDF document
+    private final java.util.List<TextChunk> chars;  // Characters of the original chunks, kept on request
     private final java.util.List<TextChunk> words;  // Words composed from characters
     private final java.util.List<TextChunk> lines;  // Text lines composed from characters
-    private final java.util.List<TextChunk> blocks; // Text blocks composed from words
+    private final java.util.List<TextChunk> blocks; // Text blocks composed from words, null where removed
+    private final Map<TextChunk, Integer> blockPositions; // Positions of the blocks in the list by identity
+    private int removedBlocks;                            // Removed positions not compacted yet
 
     // Ruling lines
     private final java.util.List<Ruling> rulings;           // Original rulings
@@ -37,14 +40,20 @@ public class Page extends PDFRectangle {
     private final List<Tag> tags;
     private final List<PDFImage> images;
     private final List<Rectangle2D> frames;
+    private Map<Integer, Rectangle2D> markedContentBoxes; // Glyph bounds of marked content by MCID
+
+    // Spatial indexes queried by the block composition filters
+    private final BlockIndex blockIndex;
+    private RulingSet rulingSet; // Built on the first query after the rulings change
 
     // Initialization
     {
         chunks = new ArrayList<>();
-        //chars  = new ArrayList<>();
+        chars  = new ArrayList<>();
         words  = new ArrayList<>();
         lines  = new ArrayList<>();
         blocks = new ArrayList<>();
+        blockPositions = new IdentityHashMap<>();
 
         rulings           = new ArrayList<>();
         normalizedRulings = new ArrayList<>();
@@ -57,6 +66,7 @@ public class Page extends PDFRectangle {
         tables            = new ArrayList<>();
         frames            = new ArrayList<>();
         images            = new ArrayList<>();
+        markedContentBoxes = Collections.emptyMap();
     }
 
     public Page(Document document, int index, float left, float top, float right, float bottom) {
@@ -84,6 +94,7 @@ public class Page extends PDFRectangle {
         else
             orientation = Orientation.NEITHER;
 
+        blockIndex = new BlockIndex(getLeft(), getTop(), width, height);
     }
 
     public void addVerticalRulings(List<Ruling> rulings) {
@@ -131,12 +142,47 @@ public class Page extends PDFRectangle {
         return tags;
     }
 
+    public Map<Integer, Rectangle2D> getMarkedContentBoxes() {
+        return markedContentBoxes;
+    }
+
+    public void setMarkedContentBoxes(Map<Integer, Rectangle2D> markedContentBoxes) {
+        this.markedContentBoxes = markedContentBoxes == null ? Collections.emptyMap() : markedContentBoxes;
+    }
+
     public int getIndex() {
         return this.index;
     }
 
+    /**
+     * Removes the block in constant time, its position is left empty until the blocks are read again.
+     */
     public void removeBlock(TextChunk block) {
-        blocks.remove(block);
+        Integer i = blockPositions.remove(block);
+        if (i != null) {
+            blocks.set(i, null);
+            removedBlocks++;
+            blockIndex.remove(block);
+        }
+    }
+
+    private java.util.List<TextChunk> compactBlocks() {
+        if (removedBlocks > 0) {
+            blocks.removeIf(Objects::isNull);
+            removedBlocks = 0;
+            blockPositions.clear();
+            for (int i = 0; i < blocks.size(); i++) {
+                blockPositions.putIfAbsent(blocks.get(i), i);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Has to be called after the bounds of a block on the page change, so the block is found by its new bounds.
+     */
+    public void updateBlock(TextChunk block) {
+        blockIndex.update(block);
     }
 
     public void addBlocks(Collection<TextChunk> blocks) {
@@ -145,25 +191,27 @@ public class Page extends PDFRectangle {
     }
 
     private void addBlock(TextChunk block) {
-        if (blocks.add(block))
+        if (compactBlocks().add(block)) {
+            blockPositions.putIfAbsent(block, blocks.size() - 1);
             block.setId(blocks.size());
+            blockIndex.add(block);
+        }
     }
 
     public boolean addChunks(List<TextChunk> chunks) {
         return this.chunks.addAll(chunks);
     }
 
-/*
     public boolean addChars(List<TextChunk> chars) {
         return this.chars.addAll(chars);
     }
-*/
 
     public boolean addWords(List<TextChunk> words) {
         return this.words.addAll(words);
     }
 
     public boolean addRulings(List<Ruling> rulings) {
+        rulingSet = null;
         return this.rulings.addAll(rulings);
     }
 
@@ -173,6 +221,10 @@ public class Page extends PDFRectangle {
         return document.getPDPage(index);
     }
 
+    public Config getConfig() {
+        return document.getConfig();
+    }
+
     public boolean addVisibleRulings(List<Ruling> visibleRulings) {
         this.visibleRulings.clear();
         boolean result = visibleRulings == null ? false : this.visibleRulings.addAll(visibleRulings);
@@ -207,20 +259,32 @@ public class Page extends PDFRectangle {
     }
 
 
-/*    public Iterator<TextChunk> getChars() {
+    public Iterator<TextChunk> getChars() {
         return chars.iterator();
-    }*/
+    }
 
     public Iterator<TextChunk> getWords() {
         return words.iterator();
     }
 
     public Iterator<TextChunk> getBlocks() {
-        return blocks.iterator();
+        return compactBlocks().iterator();
     }
 
     public List<TextChunk> getAllBlocks() {
-        return blocks;
+        return compactBlocks();
+    }
+
+    /**
+     * Returns the blocks whose bounds may intersect the area, each block once. Blocks outside the area can be
+     * returned too, the caller checks the exact condition.
+     */
+    public List<TextChunk> getBlocks(double left, double top, double right, double bottom) {
+        return blockIndex.query(left, top, right, bottom);
+    }
+
+    public int countBlocksByStartOrder(int startOrder) {
+        return blockIndex.countByStartOrder(startOrder);
     }
 
     public Iterator<Ruling> getVisibleRulings() {
@@ -239,6 +303,27 @@ public class Page extends PDFRectangle {
         return rulings;
     }
 
+    /**
+     * Returns the original vertical rulings with left < x < right.
+     */
+    public List<Ruling> getVerticalRulings(double left, double right) {
+        return getRulingSet().getVerticalRulings(left, right);
+    }
+
+    /**
+     * Returns the original horizontal rulings with top < y < bottom.
+     */
+    public List<Ruling> getHorizontalRulings(double top, double bottom) {
+        return getRulingSet().getHorizontalRulings(top, bottom);
+    }
+
+    private RulingSet getRulingSet() {
+        if (rulingSet == null) {
+            rulingSet = new RulingSet(rulings);
+        }
+        return rulingSet;
+    }
+
     public List<Table> getTables(){
         Collections.sort(tables, (t1, t2) -> {return  (int) (t1.getTop() - t2.getTop());});
         return tables;
@@ -301,8 +386,8 @@ public class Page extends PDFRectangle {
 
     public List<TextChunk> getOutsideBlocks(){
         List<TextChunk> result = new ArrayList<>();
-        if (tables.isEmpty()) return blocks;
-        for (TextChunk block: blocks) {
+        if (tables.isEmpty()) return compactBlocks();
+        for (TextChunk block: compactBlocks()) {
             for (Table table: tables) {
                 if (!block.intersects(table) && !result.contains(block)) {
                     result.add(block);
@@ -319,7 +404,7 @@ public class Page extends PDFRectangle {
     public List<TextChunk> getOutsideTextLines(){
         List<TextChunk> result = new ArrayList<>();
         Rectangle2D rec = null;
-        rec = Config.bboxes.get(this.getIndex());
+        rec = getConfig().getBBoxes().get(this.getIndex());
         if (tables.isEmpty()) return lines;
         for (TextChunk block: lines) {
             boolean canAdd = true;
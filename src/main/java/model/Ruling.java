@@ -41,7 +41,7 @@ public class Ruling extends Line2D.Float {
     }
 
     public float getPosition() {
-        return (float) (this.isVertical() ? super.getP1().getX() : super.getP2().getY());
+        return this.isVertical() ? this.x1 : this.y2;
     }
 
     public Point2D.Float getStartPoint() {
@@ -120,20 +120,56 @@ public class Ruling extends Line2D.Float {
     }
 
     public boolean nearlyIntersects(Ruling another, int colinearOrParallelExpandAmount) {
-        if (this.intersectsLine(another)) {
+        return nearlyIntersects(this.x1, this.y1, this.x2, this.y2,
+                another.x1, another.y1, another.x2, another.y2, colinearOrParallelExpandAmount);
+    }
+
+    /**
+     * Tests whether the first line nearly intersects the second one, as the rulings of these coordinates would,
+     * without expanding copies of them. A perpendicular line is expanded by DISTANCE_TOLERANCE, a parallel one is
+     * expanded along with the other line by the given amount.
+     */
+    static boolean nearlyIntersects(float x1, float y1, float x2, float y2,
+                                    float otherX1, float otherY1, float otherX2, float otherY2,
+                                    int colinearOrParallelExpandAmount) {
+        if (Line2D.linesIntersect(otherX1, otherY1, otherX2, otherY2, x1, y1, x2, y2)) {
             return true;
         }
 
-        boolean rv = false;
-
-        if (this.perpendicularTo(another)) {
-            rv = this.expand(DISTANCE_TOLERANCE).intersectsLine(another);
-        } else {
-            rv = this.expand(colinearOrParallelExpandAmount)
-                    .intersectsLine(another.expand(colinearOrParallelExpandAmount));
+        boolean vertical = isVertical(x1, y1, x2, y2);
+        boolean perpendicular = vertical == isHorizontal(otherX1, otherY1, otherX2, otherY2);
+        float amount = perpendicular ? DISTANCE_TOLERANCE : colinearOrParallelExpandAmount;
+
+        // As expand does, every end moves along the orientation the line has when it is moved
+        float start = vertical ? y1 : x1;
+        float end = vertical ? y2 : x2;
+        if (vertical) {
+            y1 = start - amount;
+        } else if (isHorizontal(x1, y1, x2, y2)) {
+            x1 = start - amount;
+        }
+        if (isVertical(x1, y1, x2, y2)) {
+            y2 = end + amount;
+        } else if (isHorizontal(x1, y1, x2, y2)) {
+            x2 = end + amount;
         }
 
-        return rv;
+        if (!perpendicular) {
+            boolean otherVertical = isVertical(otherX1, otherY1, otherX2, otherY2);
+            float otherStart = otherVertical ? otherY1 : otherX1;
+            float otherEnd = otherVertical ? otherY2 : otherX2;
+            if (otherVertical) {
+                otherY1 = otherStart - amount;
+            } else if (isHorizontal(otherX1, otherY1, otherX2, otherY2)) {
+                otherX1 = otherStart - amount;
+            }
+            if (isVertical(otherX1, otherY1, otherX2, otherY2)) {
+                otherY2 = otherEnd + amount;
+            } else if (isHorizontal(otherX1, otherY1, otherX2, otherY2)) {
+                otherX2 = otherEnd + amount;
+            }
+        }
+        return Line2D.linesIntersect(otherX1, otherY1, otherX2, otherY2, x1, y1, x2, y2);
     }
 
     public boolean perpendicularTo(Ruling other) {
@@ -167,11 +203,8 @@ public class Ruling extends Line2D.Float {
 
         List<SortObject> sos = new ArrayList<>();
 
-        TreeMap<Ruling, Boolean> tree = new TreeMap<>(new Comparator<Ruling>() {
-            @Override
-            public int compare(Ruling o1, Ruling o2) {
-                return java.lang.Double.compare(o1.getTop(), o2.getTop());
-            }});
+        // Expanded active horizontals by top, the first of the horizontals with the same top stands for them
+        TreeMap<java.lang.Float, Ruling> tree = new TreeMap<>();
 
         TreeMap<Point2D, Ruling[]> result = new TreeMap<>(new Comparator<Point2D>() {
             @Override
@@ -224,21 +257,26 @@ public class Ruling extends Line2D.Float {
         for (SortObject so : sos) {
             switch(so.type) {
                 case VERTICAL:
-                    for (Map.Entry<Ruling, Boolean> h : tree.entrySet()) {
-                        Point2D i = h.getKey().intersectionPoint(so.ruling);
+                    Ruling v = so.ruling.expand(DISTANCE_TOLERANCE);
+                    // Only horizontals within the vertical can cross it, a horizontal is level within EPSILON
+                    float top = Math.min(v.getTop(), v.getBottom()) - 1;
+                    float bottom = Math.max(v.getTop(), v.getBottom()) + 1;
+                    for (Ruling h : tree.subMap(top, true, bottom, true).values()) {
+                        Point2D i = intersectionPointOfExpanded(h, v);
                         if (i == null) {
                             continue;
                         }
-                        result.put(i,
-                                new Ruling[] { h.getKey().expand(DISTANCE_TOLERANCE),
-                                        so.ruling.expand(DISTANCE_TOLERANCE) });
+                        // The expanded rulings are not changed, so the points share them
+                        result.put(i, new Ruling[] { h, v });
                     }
                     break;
                 case H_RIGHT:
-                    tree.remove(so.ruling);
+                    tree.remove(so.ruling.getTop());
                     break;
                 case H_LEFT:
-                    tree.put(so.ruling, true);
+                    if (!tree.containsKey(so.ruling.getTop())) {
+                        tree.put(so.ruling.getTop(), so.ruling.expand(DISTANCE_TOLERANCE));
+                    }
                     break;
             }
         }
@@ -247,8 +285,10 @@ public class Ruling extends Line2D.Float {
     }
 
     public Point2D intersectionPoint(Ruling other) {
-        Ruling this_l = this.expand(DISTANCE_TOLERANCE);
-        Ruling other_l = other.expand(DISTANCE_TOLERANCE);
+        return intersectionPointOfExpanded(this.expand(DISTANCE_TOLERANCE), other.expand(DISTANCE_TOLERANCE));
+    }
+
+    private static Point2D intersectionPointOfExpanded(Ruling this_l, Ruling other_l) {
         Ruling horizontal, vertical;
 
         if (!this_l.intersectsLine(other_l)) {
@@ -270,11 +310,28 @@ public class Ruling extends Line2D.Float {
     }
 
     public boolean isVertical() {
-        return this.length() > 0 && Utils.feq(super.getP1().getX(), super.getP2().getX());
+        return isVertical(this.x1, this.y1, this.x2, this.y2);
     }
 
     public boolean isHorizontal() {
-        return this.length() > 0 && Utils.feq(super.getP1().getY(), super.getP2().getY());
+        return isHorizontal(this.x1, this.y1, this.x2, this.y2);
+    }
+
+    static boolean isVertical(float x1, float y1, float x2, float y2) {
+        return hasLength(x1, y1, x2, y2) && Utils.feq(x1, x2);
+    }
+
+    static boolean isHorizontal(float x1, float y1, float x2, float y2) {
+        return hasLength(x1, y1, x2, y2) && Utils.feq(y1, y2);
+    }
+
+    /**
+     * Returns true if the length is positive, without taking the root of the squared length.
+     */
+    static boolean hasLength(float x1, float y1, float x2, float y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return dx * dx + dy * dy > 0;
     }
 
     public Ruling join(Ruling ruling) {
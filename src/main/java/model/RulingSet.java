@@ -0,0 +1,335 @@
+package model;
+
+import utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rulings kept in float arrays: the coordinates, the orientation and the position, start and end the orientation
+ * gives. The arrays are updated when a ruling changes, so the geometry of the rulings is read and tested without
+ * recomputing the orientation or expanding copies of them. The changed coordinates are written back to the
+ * rulings. Every ruling is expected once in a set.
+ * <p>
+ * The vertical rulings sorted by x and the horizontal ones sorted by y are kept for the queries of the rulings
+ * lying between two positions, which are found by binary search.
+ */
+public final class RulingSet {
+
+    private static final byte VERTICAL = 1;
+    private static final byte HORIZONTAL = 2;
+
+    private final int size;
+    private final Ruling[] rulings;
+    private final float[] x1;
+    private final float[] y1;
+    private final float[] x2;
+    private final float[] y2;
+    private final byte[] orientations;
+    private final float[] positions;
+    private final float[] starts;
+    private final float[] ends;
+    // Sorted on the first query after the rulings change
+    private Ruling[] verticalRulings;
+    private float[] verticalXs;
+    private Ruling[] horizontalRulings;
+    private float[] horizontalYs;
+
+    /**
+     * Creates a set of the rulings in the order of the list.
+     */
+    public RulingSet(List<Ruling> rulings) {
+        size = rulings.size();
+        this.rulings = rulings.toArray(new Ruling[0]);
+        x1 = new float[size];
+        y1 = new float[size];
+        x2 = new float[size];
+        y2 = new float[size];
+        orientations = new byte[size];
+        positions = new float[size];
+        starts = new float[size];
+        ends = new float[size];
+        for (int i = 0; i < size; i++) {
+            Ruling ruling = this.rulings[i];
+            setLine(i, ruling.x1, ruling.y1, ruling.x2, ruling.y2);
+        }
+    }
+
+    /**
+     * Returns the vertical rulings with minX < x < maxX, in the order of x.
+     */
+    public List<Ruling> getVerticalRulings(double minX, double maxX) {
+        sortByCoordinates();
+        return between(verticalRulings, verticalXs, minX, maxX);
+    }
+
+    /**
+     * Returns the horizontal rulings with minY < y < maxY, in the order of y.
+     */
+    public List<Ruling> getHorizontalRulings(double minY, double maxY) {
+        sortByCoordinates();
+        return between(horizontalRulings, horizontalYs, minY, maxY);
+    }
+
+    /**
+     * Tests whether the i-th ruling nearly intersects the j-th one, as Ruling.nearlyIntersects does.
+     */
+    private boolean nearlyIntersects(int i, int j, int colinearOrParallelExpandAmount) {
+        return Ruling.nearlyIntersects(x1[i], y1[i], x2[i], y2[i], x1[j], y1[j], x2[j], y2[j],
+                colinearOrParallelExpandAmount);
+    }
+
+    private boolean isVertical(int i) {
+        return (orientations[i] & VERTICAL) != 0;
+    }
+
+    private boolean isHorizontal(int i) {
+        return (orientations[i] & HORIZONTAL) != 0;
+    }
+
+    private void setLine(int i, float x1, float y1, float x2, float y2) {
+        this.x1[i] = x1;
+        this.y1[i] = y1;
+        this.x2[i] = x2;
+        this.y2[i] = y2;
+        boolean vertical = Ruling.isVertical(x1, y1, x2, y2);
+        orientations[i] = (byte) ((vertical ? VERTICAL : 0)
+                | (Ruling.isHorizontal(x1, y1, x2, y2) ? HORIZONTAL : 0));
+        positions[i] = vertical ? x1 : y2;
+        starts[i] = vertical ? y1 : x1;
+        ends[i] = vertical ? y2 : x2;
+        verticalRulings = null;
+        horizontalRulings = null;
+    }
+
+    /**
+     * Sorts the vertical rulings by their first x and the horizontal ones by their first y, keeping the order of
+     * the set for equal coordinates. Rulings at undefined positions lie between no positions.
+     */
+    private void sortByCoordinates() {
+        if (null != verticalRulings && null != horizontalRulings) {
+            return;
+        }
+        int[] verticals = sortedOf(VERTICAL, x1);
+        verticalRulings = new Ruling[verticals.length];
+        verticalXs = new float[verticals.length];
+        for (int k = 0; k < verticals.length; k++) {
+            verticalRulings[k] = rulings[verticals[k]];
+            verticalXs[k] = x1[verticals[k]];
+        }
+        int[] horizontals = sortedOf(HORIZONTAL, y1);
+        horizontalRulings = new Ruling[horizontals.length];
+        horizontalYs = new float[horizontals.length];
+        for (int k = 0; k < horizontals.length; k++) {
+            horizontalRulings[k] = rulings[horizontals[k]];
+            horizontalYs[k] = y1[horizontals[k]];
+        }
+    }
+
+    private int[] sortedOf(byte orientation, float[] coordinates) {
+        int[] order = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if ((orientations[i] & orientation) != 0 && !Float.isNaN(coordinates[i])) {
+                order[count++] = i;
+            }
+        }
+        return sortStable(coordinates, Arrays.copyOf(order, count));
+    }
+
+    private static List<Ruling> between(Ruling[] rulings, float[] positions, double min, double max) {
+        if (!(min < max)) {
+            return Collections.emptyList();
+        }
+        int from = firstAbove(positions, min, false);
+        int to = firstAbove(positions, max, true);
+        return from < to ? Arrays.asList(rulings).subList(from, to) : Collections.emptyList();
+    }
+
+    /**
+     * Returns the index of the first position greater than (or equal to, if inclusive) the value.
+     */
+    private static int firstAbove(float[] positions, double value, boolean inclusive) {
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            boolean above = inclusive ? positions[middle] >= value : positions[middle] > value;
+            if (above) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void setStartEnd(int i, float start, float end) {
+        if (isVertical(i)) {
+            setLine(i, x1[i], start, x2[i], end);
+        } else if (isHorizontal(i)) {
+            setLine(i, start, y1[i], end, y2[i]);
+        }
+    }
+
+    private void writeBack(int i) {
+        rulings[i].setLine(x1[i], y1[i], x2[i], y2[i]);
+    }
+
+    /**
+     * Sorts the rulings by position and then by start, and puts the list in the same order.
+     */
+    private void sortByPosition(List<Ruling> list) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // The comparison of the rulings, so the sort orders them as it would order the list
+        Arrays.sort(order, (a, b) -> {
+            final float diff = positions[a] - positions[b];
+            return Float.compare(diff == 0 ? starts[a] - starts[b] : diff, 0f);
+        });
+        Ruling[] sortedRulings = new Ruling[size];
+        float[] lines = new float[size * 4];
+        for (int k = 0; k < size; k++) {
+            int i = order[k];
+            sortedRulings[k] = rulings[i];
+            lines[k * 4] = x1[i];
+            lines[k * 4 + 1] = y1[i];
+            lines[k * 4 + 2] = x2[i];
+            lines[k * 4 + 3] = y2[i];
+        }
+        for (int k = 0; k < size; k++) {
+            rulings[k] = sortedRulings[k];
+            setLine(k, lines[k * 4], lines[k * 4 + 1], lines[k * 4 + 2], lines[k * 4 + 3]);
+            list.set(k, sortedRulings[k]);
+        }
+    }
+
+    /**
+     * Sorts the rulings of one orientation by position and start in place, and joins every ruling nearly
+     * intersecting the last kept one at the same position into it. Returns the kept rulings, rulings of no length
+     * that join none are dropped.
+     */
+    public static ArrayList<Ruling> collapse(List<Ruling> rulings, int expandAmount) {
+        RulingSet set = new RulingSet(rulings);
+        set.sortByPosition(rulings);
+
+        ArrayList<Ruling> result = new ArrayList<>();
+        int last = -1;
+        for (int next = 0; next < set.size; next++) {
+            if (last >= 0 && Utils.feq(set.positions[next], set.positions[last])
+                    && set.nearlyIntersects(last, next, expandAmount)) {
+                final float lastStart = set.starts[last];
+                final float lastEnd = set.ends[last];
+
+                final boolean lastFlipped = lastStart > lastEnd;
+                final boolean nextFlipped = set.starts[next] > set.ends[next];
+
+                boolean differentDirections = nextFlipped != lastFlipped;
+                float nextS = differentDirections ? set.ends[next] : set.starts[next];
+                float nextE = differentDirections ? set.starts[next] : set.ends[next];
+
+                final float newStart = lastFlipped ? Math.max(nextS, lastStart) : Math.min(nextS, lastStart);
+                final float newEnd = lastFlipped ? Math.min(nextE, lastEnd) : Math.max(nextE, lastEnd);
+                set.setStartEnd(last, newStart, newEnd);
+                set.writeBack(last);
+            } else if (isZeroLength(set.x1[next], set.y1[next], set.x2[next], set.y2[next])) {
+                continue;
+            } else {
+                result.add(set.rulings[next]);
+                last = next;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isZeroLength(float x1, float y1, float x2, float y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return dx * dx + dy * dy == 0;
+    }
+
+    /**
+     * Moves the ends of the rulings lying closer than the thresholds to their average position, first along x
+     * and then along y. The ends are grouped in the order of their coordinate, each with the first end of its group.
+     */
+    public void snapPoints(float xThreshold, float yThreshold) {
+        int count = size * 2;
+        if (count == 0) {
+            return;
+        }
+        // The i-th ruling has the ends 2i and 2i + 1
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        for (int i = 0; i < size; i++) {
+            xs[2 * i] = x1[i];
+            ys[2 * i] = y1[i];
+            xs[2 * i + 1] = x2[i];
+            ys[2 * i + 1] = y2[i];
+        }
+
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = k;
+        }
+        order = sortStable(xs, order);
+        snap(xs, order, xThreshold);
+        order = sortStable(ys, order);
+        snap(ys, order, yThreshold);
+
+        for (int i = 0; i < size; i++) {
+            setLine(i, xs[2 * i], ys[2 * i], xs[2 * i + 1], ys[2 * i + 1]);
+            writeBack(i);
+        }
+    }
+
+    /**
+     * Groups the coordinates in the given order, each with the first one of its group while they are closer than
+     * the threshold, and moves the groups to their averages. The last coordinate stays as it is.
+     */
+    private static void snap(float[] values, int[] order, float threshold) {
+        int last = order.length - 1;
+        int groupStart = 0;
+        for (int k = 1; k <= last; k++) {
+            if (k < last && Math.abs((double) values[order[k]] - values[order[groupStart]]) < threshold) {
+                continue;
+            }
+            float average = 0;
+            for (int g = groupStart; g < k; g++) {
+                average += (double) values[order[g]];
+            }
+            average /= k - groupStart;
+            for (int g = groupStart; g < k; g++) {
+                values[order[g]] = average;
+            }
+            groupStart = k;
+        }
+    }
+
+    /**
+     * Returns the order sorted by the values, keeping the given order of equal values.
+     */
+    private static int[] sortStable(float[] values, int[] order) {
+        long[] keys = new long[order.length];
+        for (int k = 0; k < order.length; k++) {
+            keys[k] = ((long) sortableBits(values[order[k]]) << 32) | k;
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            sorted[k] = order[(int) (keys[k] & 0xFFFFFFFFL)];
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns bits of the value ordered as the values are, -0.0 below 0.0 and NaN above all.
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+}
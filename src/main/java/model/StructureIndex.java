@@ -0,0 +1,150 @@
+package model;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkedContentReference;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureNode;
+
+import java.awt.geom.Rectangle2D;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The structure tree of a document reduced to the structure types and the marked content they refer to,
+ * grouped by page index. The tree is walked once, then the structure boxes of a page are computed from the
+ * marked content of that page alone, so pages can be tagged one at a time and from any thread.
+ */
+final class StructureIndex {
+
+    private final Node root;
+
+    private StructureIndex(Node root) {
+        this.root = root;
+    }
+
+    static StructureIndex create(PDDocument pdDocument) {
+        PDStructureNode treeRoot = pdDocument.getDocumentCatalog().getStructureTreeRoot();
+        if (treeRoot == null) {
+            return null;
+        }
+
+        Map<COSDictionary, Integer> pageIndexes = new IdentityHashMap<>();
+        int index = 0;
+        for (PDPage pdPage: pdDocument.getPages()) {
+            pageIndexes.put(pdPage.getCOSObject(), index++);
+        }
+        return new StructureIndex(build(treeRoot, pageIndexes));
+    }
+
+    private static int pageIndex(PDPage page, Map<COSDictionary, Integer> pageIndexes) {
+        return page == null ? -1 : pageIndexes.getOrDefault(page.getCOSObject(), -1);
+    }
+
+    private static Node build(PDStructureNode structureNode, Map<COSDictionary, Integer> pageIndexes) {
+        String structType = null;
+        PDPage page = null;
+        if (structureNode instanceof PDStructureElement) {
+            PDStructureElement element = (PDStructureElement) structureNode;
+            structType = element.getStructureType();
+            page = element.getPage();
+        }
+
+        // Marked content kids belong to the page of the element, or of the last marked content reference
+        Node node = new Node(structType);
+        int pageIndex = pageIndex(page, pageIndexes);
+        for (Object object: structureNode.getKids()) {
+            if (object instanceof COSArray) {
+                for (COSBase base : (COSArray) object) {
+                    if (base instanceof COSDictionary) {
+                        node.add(build(PDStructureNode.create((COSDictionary) base), pageIndexes));
+                    } else if (base instanceof COSNumber) {
+                        node.add(pageIndex, ((COSNumber) base).intValue());
+                    }
+                }
+            } else if (object instanceof PDStructureNode) {
+                node.add(build((PDStructureNode) object, pageIndexes));
+            } else if (object instanceof Integer) {
+                node.add(pageIndex, (Integer) object);
+            } else if (object instanceof PDMarkedContentReference) {
+                pageIndex = pageIndex(((PDMarkedContentReference) object).getPage(), pageIndexes);
+                node.add(pageIndex, ((PDMarkedContentReference) object).getMCID());
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the structure types with their boxes on the page, children before their parents. A box is the
+     * union of the marked content boxes of the element on the page.
+     */
+    List<Map.Entry<String, Rectangle2D>> getBoxes(int pageIndex, Map<Integer, Rectangle2D> markedContentBoxes) {
+        List<Map.Entry<String, Rectangle2D>> result = new ArrayList<>();
+        root.getBox(pageIndex, markedContentBoxes, result);
+        return result;
+    }
+
+    private static Rectangle2D union(Rectangle2D box, Rectangle2D rectangle) {
+        if (rectangle == null) {
+            return box;
+        }
+        if (box == null) {
+            return rectangle;
+        }
+        box.add(rectangle);
+        return box;
+    }
+
+    private static final class Node {
+        private final String structType;
+        // Kids by page index, a kid is a child node or an MCID
+        private final Map<Integer, List<Object>> kids;
+
+        private Node(String structType) {
+            this.structType = structType;
+            this.kids = new HashMap<>();
+        }
+
+        private void add(Node child) {
+            for (Integer pageIndex: child.kids.keySet()) {
+                kids.computeIfAbsent(pageIndex, i -> new ArrayList<>()).add(child);
+            }
+        }
+
+        private void add(int pageIndex, int mcid) {
+            if (pageIndex >= 0) {
+                kids.computeIfAbsent(pageIndex, i -> new ArrayList<>()).add(mcid);
+            }
+        }
+
+        private Rectangle2D getBox(int pageIndex, Map<Integer, Rectangle2D> markedContentBoxes,
+                                   List<Map.Entry<String, Rectangle2D>> result) {
+            Rectangle2D box = null;
+            for (Object kid: kids.getOrDefault(pageIndex, Collections.emptyList())) {
+                if (kid instanceof Node) {
+                    box = union(box, ((Node) kid).getBox(pageIndex, markedContentBoxes, result));
+                } else {
+                    // The union grows its first argument, so the marked content box is never handed out
+                    Rectangle2D contentBox = markedContentBoxes.get(kid);
+                    box = union(box, contentBox != null ? (Rectangle2D) contentBox.clone() : null);
+                }
+            }
+
+            // Only typed elements have a box, the others do not extend their parent
+            if (box == null || structType == null) {
+                return null;
+            }
+            result.add(new AbstractMap.SimpleImmutableEntry<>(structType, (Rectangle2D) box.clone()));
+            return box;
+        }
+    }
+}
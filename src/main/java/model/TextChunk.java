@@ -4,7 +4,9 @@ import org.apache.pdfbox.text.TextPosition;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -19,14 +21,13 @@ public class TextChunk extends PDFRectangle {
     private int endOrder;
     private int coherence;
     private boolean modified = false;
-    private List<TextPosition> textPositions = new ArrayList<>();
+    private List<TextPosition> textPositions; // Created when text positions are kept
     private String metadata = "";
 
     public TextChunk(double left, double top, double right, double bottom, String text, Page page) {
         super(left, top, right, bottom);
         setText(text);
         setPage(page);
-        initTextLine();
     }
 
     public TextChunk(PDFRectangle boundingBox, String text, Page page) {
@@ -121,58 +122,42 @@ public class TextChunk extends PDFRectangle {
         return String.format("P%dB%d", pageIndex, id);
     }
 
-    private List<TextLine> textLines = new ArrayList<>();
-    private List<TextLine> words = new ArrayList<>();
-
-    public void updateTextLine() {
-        TextLine textLine = textLines.get(0);
-        textLine.setText(text);
-        textLine.setFont(font);
-        PDFRectangle bbox = new PDFRectangle(getLeft(), getTop(), getRight(), getBottom());
-        textLine.setBbox(bbox);
-    }
-
-    private void initTextLine() {
-        String text = getText();
-        PDFRectangle bbox = new PDFRectangle(getLeft(), getTop(), getRight(), getBottom());
-        PDFFont font = getFont();
-        TextLine textLine = new TextLine(text, bbox, font);
-        textLines.add(textLine);
-    }
-
-    public void newTextLine(TextChunk block) {
-        textLines.addAll(block.textLines);
-    }
+    private WordStore words; // Words of a text line
 
     public void addWords(List<TextChunk> words) {
+        if (null == this.words) {
+            this.words = new WordStore(words.size());
+        }
         int order = 0;
         for (TextChunk c: words) {
             order = Math.max(order, c.getEndOrder());
-            String text = c.getText();
-            PDFRectangle bbox = new PDFRectangle(c.getLeft(), c.getTop(), c.getRight(), c.getBottom());
-            PDFFont font = c.getFont();
-            TextLine textLine = new TextLine(text, bbox, font);
-            this.words.add(textLine);
+            this.words.add(c.getText(), c.getLeft(), c.getTop(), c.getRight(), c.getBottom(), c.getFont());
         }
         setEndOrder(order);
         setStartOrder(order);
     }
 
     public List<TextLine> getWords() {
-        return words;
+        return null == words ? Collections.emptyList() : words;
     }
 
     public void addAllTextPositions(List<TextPosition> tp) {
+        if (null == textPositions) {
+            textPositions = new ArrayList<>(tp.size());
+        }
         textPositions.addAll(tp);
     }
 
     public void addTextPosition(TextPosition tp) {
+        if (null == textPositions) {
+            textPositions = new ArrayList<>();
+        }
         textPositions.add(tp);
     }
 
 
     public Iterator<TextPosition> getTextPositions() {
-        return textPositions.iterator();
+        return null == textPositions ? Collections.emptyIterator() : textPositions.iterator();
     }
 
     public String getMetadata() {
@@ -183,59 +168,71 @@ public class TextChunk extends PDFRectangle {
         this.metadata = metadata;
     }
 
-    public class TextLine {
-        private String text;
-        private PDFRectangle bbox;
-        private PDFFont font;
-
-        private String metadata = "";
+    /**
+     * A word of a text line, a view of the line words.
+     */
+    public static class TextLine {
+        private final WordStore store;
+        private final int index;
 
-        private String url = "";
+        TextLine(WordStore store, int index) {
+            this.store = store;
+            this.index = index;
+        }
 
         public void setUrl(String url){
-            this.url = url;
+            store.setUrl(index, url);
         }
 
         public String getUrl() {
-            return this.url;
+            return store.getUrl(index);
         }
 
         public String getText() {
-            return text;
+            return store.getText(index);
         }
 
         public PDFFont getFont() {
-            return this.font;
+            return store.getFont(index);
         }
 
         public void setFont(PDFFont font) {
-            this.font = font;
+            store.setFont(index, font);
         }
 
         public void setText(String text) {
-            this.text = text;
+            store.setText(index, text);
         }
 
-        public PDFRectangle getBbox() {
-            return this.bbox;
+        public double getLeft() {
+            return store.getX(index);
         }
 
-        public void setBbox(PDFRectangle bbox) {
-            this.bbox = bbox;
+        public double getTop() {
+            return store.getY(index);
         }
 
-        public void setMetadata(String metadata) {
-            this.metadata = metadata;
+        public double getWidth() {
+            return store.getWidth(index);
         }
 
-        public String getMetadata(){
-            return metadata;
+        public double getHeight() {
+            return store.getHeight(index);
+        }
+
+        /**
+         * Returns true if the word intersects the rectangle, as its bounding box would.
+         */
+        public boolean intersects(Rectangle2D rectangle) {
+            return rectangle.intersects(getLeft(), getTop(), getWidth(), getHeight());
         }
 
-        private TextLine(String text, PDFRectangle bbox, PDFFont font) {
-            setText(text);
-            setBbox(bbox);
-            setFont(font);
+        public void setMetadata(String metadata) {
+            store.setMetadata(index, metadata);
+        }
+
+        public String getMetadata(){
+            return store.getMetadata(index);
         }
     }
 
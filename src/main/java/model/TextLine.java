@@ -1,9 +1,6 @@
 package model;
 
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 public class TextLine extends TextChunk{
 
@@ -20,11 +17,6 @@ public class TextLine extends TextChunk{
         super(leftTopPoint, rightBottomPoint, text, page);
     }
 
-    public void addWors(List words){
-        this.getWords().addAll(words);
-        Collections.sort(this.getWords(), (c1, c2) -> {return  (int) (c1.getBbox().getLeft() - c2.getBbox().getLeft());});
-    }
-
     public void retract(){
         getPage().getTextLines().remove(this);
     }
@@ -0,0 +1,120 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The words of a text line, stored in parallel arrays: the left, top, width and height of every word, its text
+ * and its font. The metadata and URL arrays are created only when a word gets one. Each get returns a new
+ * word object that reads and writes these arrays, so the line does not keep an object per word.
+ * <p>
+ * Only the words of text lines are stored here. Each word still holds its own text string, and the page words,
+ * lines and blocks are TextChunk objects.
+ */
+public final class WordStore extends AbstractList<TextChunk.TextLine> {
+    private static final int BOUNDS = 4; // x, y, width and height of a word
+
+    private int size;
+    private double[] bounds;
+    private String[] texts;
+    private PDFFont[] fonts;
+    private String[] metadata; // Created when the metadata of a word is set
+    private String[] urls;     // Created when the URL of a word is set
+
+    public WordStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        bounds = new double[capacity * BOUNDS];
+        texts = new String[capacity];
+        fonts = new PDFFont[capacity];
+    }
+
+    public void add(String text, double left, double top, double right, double bottom, PDFFont font) {
+        if (size == texts.length) {
+            grow();
+        }
+        int i = size * BOUNDS;
+        bounds[i]     = left;
+        bounds[i + 1] = top;
+        bounds[i + 2] = right - left;
+        bounds[i + 3] = bottom - top;
+        texts[size] = text;
+        fonts[size] = font;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = texts.length * 2;
+        bounds = Arrays.copyOf(bounds, capacity * BOUNDS);
+        texts = Arrays.copyOf(texts, capacity);
+        fonts = Arrays.copyOf(fonts, capacity);
+        if (null != metadata) metadata = Arrays.copyOf(metadata, capacity);
+        if (null != urls) urls = Arrays.copyOf(urls, capacity);
+    }
+
+    @Override
+    public TextChunk.TextLine get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return new TextChunk.TextLine(this, index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    double getX(int index) {
+        return bounds[index * BOUNDS];
+    }
+
+    double getY(int index) {
+        return bounds[index * BOUNDS + 1];
+    }
+
+    double getWidth(int index) {
+        return bounds[index * BOUNDS + 2];
+    }
+
+    double getHeight(int index) {
+        return bounds[index * BOUNDS + 3];
+    }
+
+    String getText(int index) {
+        return texts[index];
+    }
+
+    void setText(int index, String text) {
+        texts[index] = text;
+    }
+
+    PDFFont getFont(int index) {
+        return fonts[index];
+    }
+
+    void setFont(int index, PDFFont font) {
+        fonts[index] = font;
+    }
+
+    String getMetadata(int index) {
+        return null == metadata || null == metadata[index] ? "" : metadata[index];
+    }
+
+    void setMetadata(int index, String value) {
+        if (null == metadata) {
+            metadata = new String[texts.length];
+        }
+        metadata[index] = value;
+    }
+
+    String getUrl(int index) {
+        return null == urls || null == urls[index] ? "" : urls[index];
+    }
+
+    void setUrl(int index, String url) {
+        if (null == urls) {
+            urls = new String[texts.length];
+        }
+        urls[index] = url;
+    }
+}
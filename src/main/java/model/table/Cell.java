@@ -3,7 +3,7 @@ package model.table;
 import model.PDFRectangle;
 import model.TextChunk;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -19,7 +19,8 @@ public class Cell extends PDFRectangle {
     private int rb; // Bottom row index
     private int order;
 
-    private List<TextChunk> words = new ArrayList<>();
+    // Words of the page text lines intersecting the cell, in page order
+    private List<TextChunk.TextLine> textLineWords = Collections.emptyList();
 
     private int invisiable = 0;
 
@@ -59,6 +60,7 @@ public class Cell extends PDFRectangle {
 
     public Cell(Cell cell) {
         this(cell.getBBox(), cell.invisiable, cell.contentBlocks, cell.cl, cell.rt, cell.cr, cell.rb);
+        this.textLineWords = cell.textLineWords;
     }
 
     public String getText() {
@@ -130,8 +132,12 @@ public class Cell extends PDFRectangle {
         return contentBlocks;
     }
 
-    public void addWord(TextChunk word) {
-        this.words.add(word);
+    public List<TextChunk.TextLine> getTextLineWords() {
+        return textLineWords;
+    }
+
+    public void setTextLineWords(List<TextChunk.TextLine> textLineWords) {
+        this.textLineWords = textLineWords;
     }
 
 }
\ No newline at end of file
@@ -203,7 +203,9 @@ public class Table extends PDFRectangle {
                     cell.setCr(cl);
                     for (int i = cl + 1; i <= cr; i++){
                         PDFRectangle rec = new PDFRectangle(cell.getLeft(), cell.getTop(), cell.getRight(), cell.getBottom());
-                        splitedCells.add(new Cell(rec, 1, cell.getTextBlocks(), i, rt, i, rt));
+                        Cell splitedCell = new Cell(rec, 1, cell.getTextBlocks(), i, rt, i, rt);
+                        splitedCell.setTextLineWords(cell.getTextLineWords());
+                        splitedCells.add(splitedCell);
                     }
                 }
                 if (w > 0) {
@@ -211,7 +213,9 @@ public class Table extends PDFRectangle {
                     cell.setRb(rt);
                     for (int i = rt + 1; i < rb; i++){
                         Row r = rows.get(i);
-                        r.addCell(new Cell(cell, 1, cell.getTextBlocks(), cl, i, cr, i));
+                        Cell splitedCell = new Cell(cell, 1, cell.getTextBlocks(), cl, i, cr, i);
+                        splitedCell.setTextLineWords(cell.getTextLineWords());
+                        r.addCell(splitedCell);
                     }
                 }
             }
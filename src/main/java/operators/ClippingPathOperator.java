@@ -0,0 +1,34 @@
+package operators;
+
+import interfaces.GraphicsProcessor;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+
+import java.awt.geom.Path2D;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Clipping path operators (W, W*) for engines that are not PDFGraphicsStreamEngine.
+ * The context has to implement GraphicsProcessor.
+ */
+public class ClippingPathOperator extends OperatorProcessor {
+
+    private final String name;
+
+    public ClippingPathOperator(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void process(Operator operator, List<COSBase> arguments) throws IOException {
+        GraphicsProcessor processor = (GraphicsProcessor) context;
+        processor.clip("W*".equals(name) ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,60 @@
+package operators;
+
+import interfaces.GraphicsProcessor;
+import org.apache.pdfbox.contentstream.operator.MissingOperandException;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The Do operator: forms are processed like PDFBox does, image placements are passed to the context,
+ * which has to implement GraphicsProcessor.
+ */
+public class DrawXObject extends OperatorProcessor {
+
+    private static final int MAX_FORM_LEVEL = 25;
+
+    @Override
+    public void process(Operator operator, List<COSBase> arguments) throws IOException {
+        if (arguments.isEmpty()) {
+            throw new MissingOperandException(operator, arguments);
+        }
+        COSBase base = arguments.get(0);
+        if (!(base instanceof COSName)) {
+            return;
+        }
+
+        PDXObject xobject = context.getResources().getXObject((COSName) base);
+        if (xobject instanceof PDImageXObject) {
+            ((GraphicsProcessor) context).drawImage((PDImageXObject) xobject);
+        } else if (xobject instanceof PDFormXObject) {
+            try {
+                context.increaseLevel();
+                if (context.getLevel() > MAX_FORM_LEVEL) {
+                    return;
+                }
+                PDFormXObject form = (PDFormXObject) xobject;
+                if (form instanceof PDTransparencyGroup) {
+                    context.showTransparencyGroup((PDTransparencyGroup) form);
+                } else {
+                    context.showForm(form);
+                }
+            } finally {
+                context.decreaseLevel();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Do";
+    }
+}
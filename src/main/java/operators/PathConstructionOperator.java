@@ -0,0 +1,129 @@
+package operators;
+
+import interfaces.GraphicsProcessor;
+import org.apache.pdfbox.contentstream.operator.MissingOperandException;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSNumber;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Path construction operators (m, l, c, v, y, h, re) for engines that are not PDFGraphicsStreamEngine.
+ * The context has to implement GraphicsProcessor.
+ */
+public class PathConstructionOperator extends OperatorProcessor {
+
+    private final String name;
+
+    public PathConstructionOperator(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void process(Operator operator, List<COSBase> arguments) throws IOException {
+        GraphicsProcessor processor = (GraphicsProcessor) context;
+
+        if ("h".equals(name)) {
+            if (processor.getCurrentPoint() != null) {
+                processor.closePath();
+            }
+            return;
+        }
+
+        int operandCount = getOperandCount();
+        if (arguments.size() < operandCount) {
+            throw new MissingOperandException(operator, arguments);
+        }
+        if (!checkArrayTypesClass(arguments, COSNumber.class)) {
+            return;
+        }
+
+        float[] operands = new float[operandCount];
+        for (int i = 0; i < operandCount; i++) {
+            operands[i] = ((COSNumber) arguments.get(i)).floatValue();
+        }
+
+        switch (name) {
+            case "m": {
+                Point2D.Float p = context.transformedPoint(operands[0], operands[1]);
+                processor.moveTo(p.x, p.y);
+                break;
+            }
+            case "l": {
+                Point2D.Float p = context.transformedPoint(operands[0], operands[1]);
+                if (processor.getCurrentPoint() == null) {
+                    processor.moveTo(p.x, p.y);
+                } else {
+                    processor.lineTo(p.x, p.y);
+                }
+                break;
+            }
+            case "c": {
+                Point2D.Float p1 = context.transformedPoint(operands[0], operands[1]);
+                Point2D.Float p2 = context.transformedPoint(operands[2], operands[3]);
+                Point2D.Float p3 = context.transformedPoint(operands[4], operands[5]);
+                curveTo(processor, p1, p2, p3);
+                break;
+            }
+            case "v": {
+                Point2D current = processor.getCurrentPoint();
+                Point2D.Float p2 = context.transformedPoint(operands[0], operands[1]);
+                Point2D.Float p3 = context.transformedPoint(operands[2], operands[3]);
+                Point2D.Float p1 = current == null ? p3
+                        : new Point2D.Float((float) current.getX(), (float) current.getY());
+                curveTo(processor, p1, p2, p3);
+                break;
+            }
+            case "y": {
+                Point2D.Float p1 = context.transformedPoint(operands[0], operands[1]);
+                Point2D.Float p3 = context.transformedPoint(operands[2], operands[3]);
+                curveTo(processor, p1, p3, p3);
+                break;
+            }
+            case "re": {
+                float x = operands[0];
+                float y = operands[1];
+                float w = operands[2];
+                float h = operands[3];
+                processor.appendRectangle(
+                        context.transformedPoint(x, y),
+                        context.transformedPoint(x + w, y),
+                        context.transformedPoint(x + w, y + h),
+                        context.transformedPoint(x, y + h));
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private static void curveTo(GraphicsProcessor processor, Point2D.Float p1, Point2D.Float p2, Point2D.Float p3)
+            throws IOException {
+        if (processor.getCurrentPoint() == null) {
+            processor.moveTo(p3.x, p3.y);
+        } else {
+            processor.curveTo(p1.x, p1.y, p2.x, p2.y, p3.x, p3.y);
+        }
+    }
+
+    private int getOperandCount() {
+        switch (name) {
+            case "m":
+            case "l":
+                return 2;
+            case "c":
+                return 6;
+            default:
+                return 4;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,75 @@
+package operators;
+
+import interfaces.GraphicsProcessor;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+
+import java.awt.geom.Path2D;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Path painting operators (S, s, f, F, f*, B, B*, b, b*, n) for engines that are not PDFGraphicsStreamEngine.
+ * The context has to implement GraphicsProcessor.
+ */
+public class PathPaintingOperator extends OperatorProcessor {
+
+    private final String name;
+
+    public PathPaintingOperator(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void process(Operator operator, List<COSBase> arguments) throws IOException {
+        GraphicsProcessor processor = (GraphicsProcessor) context;
+
+        switch (name) {
+            case "S":
+                processor.strokePath();
+                break;
+            case "s":
+                closePath(processor);
+                processor.strokePath();
+                break;
+            case "f":
+            case "F":
+                processor.fillPath(Path2D.WIND_NON_ZERO);
+                break;
+            case "f*":
+                processor.fillPath(Path2D.WIND_EVEN_ODD);
+                break;
+            case "B":
+                processor.fillAndStrokePath(Path2D.WIND_NON_ZERO);
+                break;
+            case "B*":
+                processor.fillAndStrokePath(Path2D.WIND_EVEN_ODD);
+                break;
+            case "b":
+                closePath(processor);
+                processor.fillAndStrokePath(Path2D.WIND_NON_ZERO);
+                break;
+            case "b*":
+                closePath(processor);
+                processor.fillAndStrokePath(Path2D.WIND_EVEN_ODD);
+                break;
+            case "n":
+                processor.endPath();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void closePath(GraphicsProcessor processor) throws IOException {
+        if (processor.getCurrentPoint() != null) {
+            processor.closePath();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
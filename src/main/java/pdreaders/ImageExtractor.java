@@ -1,17 +1,12 @@
 package pdreaders;
 
+import interfaces.ContentStreamListener;
 import model.PDFImage;
 import model.Page;
-import org.apache.pdfbox.cos.COSBase;
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.graphics.PDXObject;
-import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.util.Matrix;
-import org.apache.pdfbox.contentstream.operator.DrawObject;
-import org.apache.pdfbox.contentstream.operator.Operator;
-import org.apache.pdfbox.contentstream.PDFStreamEngine;
 
 import java.awt.geom.Rectangle2D;
 import java.io.File;
@@ -19,28 +14,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.pdfbox.contentstream.operator.state.Concatenate;
-import org.apache.pdfbox.contentstream.operator.state.Restore;
-import org.apache.pdfbox.contentstream.operator.state.Save;
-import org.apache.pdfbox.contentstream.operator.state.SetGraphicsStateParameters;
-import org.apache.pdfbox.contentstream.operator.state.SetMatrix;
-import utils.Config;
+public class ImageExtractor implements ContentStreamListener {
 
-public class ImageExtractor extends PDFStreamEngine {
-
-    private PDDocument document;
     private final List<PDFImage> images;
+    private PDFStreamEngine engine;
     private Page currentPage;
     private File sourceFile;
 
-    public ImageExtractor(PDDocument document, File sourceFile) throws IOException {
-        addOperator(new Concatenate());
-        addOperator(new DrawObject());
-        addOperator(new SetGraphicsStateParameters());
-        addOperator(new Save());
-        addOperator(new Restore());
-        addOperator(new SetMatrix());
-        this.document = document;
+    public ImageExtractor(File sourceFile) {
         this.images = new ArrayList<>(5);
         this.sourceFile = sourceFile;
     }
@@ -48,45 +29,38 @@ public class ImageExtractor extends PDFStreamEngine {
     private void release() {
         this.images.clear();
         this.currentPage = null;
+        this.engine = null;
     }
 
-    public void process(Page page) throws IOException {
+    @Override
+    public void startPage(PDFStreamEngine engine, PDPage pdPage, Page page) {
         if (null == page) {
             throw new IllegalArgumentException("Page cannot be null");
         } else {
+            release();
+            this.engine = engine;
             this.currentPage = page;
-            processPage(page.getPDPage());
-            try {
-                page.addImages(this.images);
-            } finally {
-                release();
-            }
         }
     }
 
     @Override
-    protected void processOperator( Operator operator, List<COSBase> operands) throws IOException {
-        String operation = operator.getName();
-        if( "Do".equals(operation)) {
-            COSName objectName = (COSName) operands.get( 0 );
-            PDXObject xobject = getResources().getXObject( objectName );
-            if( xobject instanceof PDImageXObject) {
-                PDImageXObject image = (PDImageXObject)xobject;
-            int imageWidth = image.getWidth();
-                int imageHeight = image.getHeight();
-                Matrix ctmNew = getGraphicsState().getCurrentTransformationMatrix();
-                Rectangle2D.Float bbox = new Rectangle2D.Float(ctmNew.getTranslateX(), ctmNew.getTranslateY(),
-                        imageWidth, imageHeight);
-                PDFImage pdfImage = new PDFImage(image, bbox, currentPage, Config.tmpDir);
-                this.images.add(pdfImage);
-                pdfImage.save();
-            }
-            else if(xobject instanceof PDFormXObject) {
-                PDFormXObject form = (PDFormXObject)xobject;
-                showForm(form);
-            }
-        } else {
-            super.processOperator( operator, operands);
+    public void endPage(Page page) {
+        try {
+            page.addImages(this.images);
+        } finally {
+            release();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void drawImage(PDImageXObject image) throws IOException {
+        int imageWidth = image.getWidth();
+        int imageHeight = image.getHeight();
+        Matrix ctmNew = engine.getGraphicsState().getCurrentTransformationMatrix();
+        Rectangle2D.Float bbox = new Rectangle2D.Float(ctmNew.getTranslateX(), ctmNew.getTranslateY(),
+                imageWidth, imageHeight);
+        PDFImage pdfImage = new PDFImage(image, bbox, currentPage, currentPage.getConfig().getTmpDir());
+        this.images.add(pdfImage);
+        pdfImage.save();
+    }
+}
@@ -0,0 +1,202 @@
+package pdreaders;
+
+import interfaces.ContentStreamListener;
+import model.Page;
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDMarkedContent;
+import org.apache.pdfbox.pdmodel.font.*;
+import org.apache.pdfbox.text.TextPosition;
+import org.apache.pdfbox.util.Matrix;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Collects marked-content sequences of a page the way PDFMarkedContentExtractor does and reduces them
+ * to glyph bounding boxes by MCID, which is all the structure tree parsing needs.
+ */
+public class MarkedContentExtractor implements ContentStreamListener {
+
+    private final List<PDMarkedContent> markedContents = new ArrayList<>();
+    private final Deque<PDMarkedContent> currentMarkedContents = new ArrayDeque<>();
+    private final Map<String, List<TextPosition>> characterListMapping = new HashMap<>();
+
+    private void release() {
+        markedContents.clear();
+        currentMarkedContents.clear();
+        characterListMapping.clear();
+    }
+
+    @Override
+    public void startPage(PDFStreamEngine engine, PDPage pdPage, Page page) {
+        release();
+    }
+
+    @Override
+    public void endPage(Page page) throws IOException {
+        try {
+            Map<Integer, PDMarkedContent> theseMarkedContents = new HashMap<>();
+            for (PDMarkedContent markedContent : markedContents) {
+                addToMap(theseMarkedContents, markedContent);
+            }
+
+            Map<Integer, Rectangle2D> boxes = new HashMap<>();
+            for (Integer mcid : theseMarkedContents.keySet()) {
+                Rectangle2D box = showContent(mcid, theseMarkedContents);
+                if (box != null) {
+                    boxes.put(mcid, box);
+                }
+            }
+            page.setMarkedContentBoxes(boxes);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void beginMarkedContentSequence(COSName tag, COSDictionary properties) {
+        PDMarkedContent markedContent = PDMarkedContent.create(tag, properties);
+        if (currentMarkedContents.isEmpty()) {
+            markedContents.add(markedContent);
+        } else {
+            PDMarkedContent currentMarkedContent = currentMarkedContents.peek();
+            if (currentMarkedContent != null) {
+                currentMarkedContent.addMarkedContent(markedContent);
+            }
+        }
+        currentMarkedContents.push(markedContent);
+    }
+
+    @Override
+    public void endMarkedContentSequence() {
+        if (!currentMarkedContents.isEmpty()) {
+            currentMarkedContents.pop();
+        }
+    }
+
+    @Override
+    public void showTextPosition(TextPosition text) {
+        // Overlapping duplicates are suppressed like PDFMarkedContentExtractor does
+        String textCharacter = text.getUnicode();
+        float textX = text.getX();
+        float textY = text.getY();
+        List<TextPosition> sameTextCharacters = characterListMapping.computeIfAbsent(textCharacter, k -> new ArrayList<>());
+        float tolerance = text.getWidth() / textCharacter.length() / 3.0f;
+        for (TextPosition character : sameTextCharacters) {
+            if (character.getUnicode() != null
+                    && within(character.getX(), textX, tolerance)
+                    && within(character.getY(), textY, tolerance)) {
+                return;
+            }
+        }
+        sameTextCharacters.add(text);
+
+        if (!currentMarkedContents.isEmpty()) {
+            currentMarkedContents.peek().addText(text);
+        }
+    }
+
+    private static boolean within(float first, float second, float variance) {
+        return second > first - variance && second < first + variance;
+    }
+
+    private void addToMap(Map<Integer, PDMarkedContent> theseMarkedContents, PDMarkedContent markedContent) {
+        theseMarkedContents.put(markedContent.getMCID(), markedContent);
+        for (Object object : markedContent.getContents()) {
+            if (object instanceof PDMarkedContent) {
+                addToMap(theseMarkedContents, (PDMarkedContent)object);
+            }
+        }
+    }
+
+    private Rectangle2D showContent(int mcid, Map<Integer, PDMarkedContent> theseMarkedContents) throws IOException {
+        Rectangle2D box = null;
+        PDMarkedContent markedContent = theseMarkedContents != null ? theseMarkedContents.get(mcid) : null;
+        List<Object> contents = markedContent != null ? markedContent.getContents() : Collections.emptyList();
+        for (Object object : contents) {
+            if (object instanceof TextPosition) {
+                TextPosition textPosition = (TextPosition)object;
+                int[] codes = textPosition.getCharacterCodes();
+                if (codes.length == 1) {
+                    Shape bounds = calculateGlyphBounds(textPosition.getTextMatrix(), textPosition.getFont(), codes[0]);
+                    if (bounds != null) {
+                        box = union(box, bounds.getBounds2D());
+                    }
+                }
+            } else if (object instanceof PDMarkedContent) {
+                PDMarkedContent thisMarkedContent = (PDMarkedContent) object;
+                box = union(box, showContent(thisMarkedContent.getMCID(), theseMarkedContents));
+            }
+        }
+        return box;
+    }
+
+    private static Rectangle2D union(Rectangle2D box, Rectangle2D rectangle) {
+        if (rectangle == null) {
+            return box;
+        }
+        if (box == null) {
+            return rectangle;
+        }
+        box.add(rectangle);
+        return box;
+    }
+
+    private Shape calculateGlyphBounds(Matrix textRenderingMatrix, PDFont font, int code) throws IOException {
+        GeneralPath path = null;
+        AffineTransform at = textRenderingMatrix.createAffineTransform();
+        at.concatenate(font.getFontMatrix().createAffineTransform());
+        if (font instanceof PDType3Font) {
+
+            PDType3Font t3Font = (PDType3Font) font;
+            PDType3CharProc charProc = t3Font.getCharProc(code);
+            if (charProc != null) {
+                BoundingBox fontBBox = t3Font.getBoundingBox();
+                PDRectangle glyphBBox = charProc.getGlyphBBox();
+                if (glyphBBox != null) {
+                    glyphBBox.setLowerLeftX(Math.max(fontBBox.getLowerLeftX(), glyphBBox.getLowerLeftX()));
+                    glyphBBox.setLowerLeftY(Math.max(fontBBox.getLowerLeftY(), glyphBBox.getLowerLeftY()));
+                    glyphBBox.setUpperRightX(Math.min(fontBBox.getUpperRightX(), glyphBBox.getUpperRightX()));
+                    glyphBBox.setUpperRightY(Math.min(fontBBox.getUpperRightY(), glyphBBox.getUpperRightY()));
+                    path = glyphBBox.toGeneralPath();
+                }
+            }
+        }
+        else if (font instanceof PDVectorFont) {
+            PDVectorFont vectorFont = (PDVectorFont) font;
+            path = vectorFont.getPath(code);
+
+            if (font instanceof PDTrueTypeFont) {
+                PDTrueTypeFont ttFont = (PDTrueTypeFont) font;
+                int unitsPerEm = ttFont.getTrueTypeFont().getHeader().getUnitsPerEm();
+                at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
+            }
+            if (font instanceof PDType0Font) {
+                PDType0Font t0font = (PDType0Font) font;
+                if (t0font.getDescendantFont() instanceof PDCIDFontType2) {
+                    int unitsPerEm = ((PDCIDFontType2) t0font.getDescendantFont()).getTrueTypeFont().getHeader().getUnitsPerEm();
+                    at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
+                }
+            }
+        }
+        else if (font instanceof PDSimpleFont) {
+            PDSimpleFont simpleFont = (PDSimpleFont) font;
+            String name = simpleFont.getEncoding().getName(code);
+            path = simpleFont.getPath(name);
+        }
+        if (path == null) {
+            return null;
+        }
+
+        return at.createTransformedShape(path.getBounds2D());
+    }
+}
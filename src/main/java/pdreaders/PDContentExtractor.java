@@ -1,15 +1,27 @@
 package pdreaders;
 
 import java.awt.*;
+import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.*;
 import java.util.*;
 import java.util.List;
 
+import interfaces.ContentStreamListener;
+import interfaces.GraphicsProcessor;
 import model.*;
+import operators.BeginMarkedContent;
+import operators.ClippingPathOperator;
+import operators.DrawXObject;
+import operators.PathConstructionOperator;
+import operators.PathPaintingOperator;
 import org.apache.pdfbox.contentstream.PDFStreamEngine;
 import org.apache.pdfbox.contentstream.operator.color.*;
+import org.apache.pdfbox.contentstream.operator.markedcontent.BeginMarkedContentSequence;
+import org.apache.pdfbox.contentstream.operator.markedcontent.EndMarkedContentSequence;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDResources;
@@ -17,13 +29,19 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
 import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 import org.apache.commons.lang3.StringUtils;
 import utils.Config;
 
-public class PDContentExtractor extends PDFTextStripper {
+/**
+ * A single pass over a page content stream. Text is collected here, path segments, marked-content sequences
+ * and image placements are passed to the registered listeners.
+ */
+public class PDContentExtractor extends PDFTextStripper implements GraphicsProcessor {
 
     private PDDocument document;          // A PDF document to process
     private final List<TextChunk> chunks; // Original text chunks extracted from the PDF document
@@ -31,13 +49,12 @@ public class PDContentExtractor extends PDFTextStripper {
     private final List<TextChunk> words;  // Words composed from characters
     private final List<TextChunk> tmpWords;
     private final List<TextChunk> lines;  // Text lines composed from characters
-    private final List<Ruling> rulings;   // Ruling lines from the PDF document
+    private final List<ContentStreamListener> listeners;
+    private final Set<TextDetail> details; // Optional granularities to keep
 
     private final List<Rectangle2D> frames;
 
     private int order; // An index of an original chunk in its PDF document
-    private final char[] whitespaces;
-
     private boolean newLineStarted;
     private final Point2D.Float lineStartPoint;
     private final Point2D.Float lineEndPoint;
@@ -47,6 +64,10 @@ public class PDContentExtractor extends PDFTextStripper {
     private float maxRight = Float.MIN_VALUE;
 
     private Page currentPage;
+    private final Point2D.Float currentPoint;
+    // The current path in page space and the winding rule it clips with, -1 when it does not clip
+    private final GeneralPath linePath;
+    private int clipWindingRule = -1;
 
     // Settings
     {
@@ -62,56 +83,47 @@ public class PDContentExtractor extends PDFTextStripper {
         addOperator(new SetNonStrokingDeviceGrayColor());
         addOperator(new SetNonStrokingColor());
         addOperator(new SetNonStrokingColorN());
+
+        for (String operator: new String[] {"m", "l", "c", "v", "y", "h", "re"}) {
+            addOperator(new PathConstructionOperator(operator));
+        }
+        for (String operator: new String[] {"S", "s", "f", "F", "f*", "B", "B*", "b", "b*", "n"}) {
+            addOperator(new PathPaintingOperator(operator));
+        }
+        addOperator(new ClippingPathOperator("W"));
+        addOperator(new ClippingPathOperator("W*"));
+        addOperator(new BeginMarkedContent());
+        addOperator(new BeginMarkedContentSequence());
+        addOperator(new EndMarkedContentSequence());
+        addOperator(new DrawXObject());
     }
 
     public PDContentExtractor(PDDocument document) throws IOException {
+        this(document, Collections.emptySet());
+    }
+
+    public PDContentExtractor(PDDocument document, Set<TextDetail> details) throws IOException {
         this.document = document;
+        this.details = details;
         chunks = new ArrayList<>(500);
         chars = new ArrayList<>(5000);
         words = new ArrayList<>(1000);
         tmpWords = new ArrayList<>(100);
         lines = new ArrayList<>(500);
-        rulings = new ArrayList<>(200);
+        listeners = new ArrayList<>();
+        listeners.add(new RulingExtractor());
         frames = new ArrayList<>(5000);
 
-        whitespaces = new char[]{
-                '\u0020', //  space
-                '\u00A0', //  no-break space
-                '\u0009', //  character tabulation
-                '\n',     //  line feed
-                '\u000B', //  line tabulation
-                '\u000C', //  form feed
-                '\r',     //  carriage return
-                '\u0085', //  next line
-                '\u1680', //  ogham space mark
-                '\u2000', //  en quad
-                '\u2001', //  em quad
-                '\u2002', //  en space
-                '\u2003', //  em space
-                '\u2004', //  three-per-em space
-                '\u2005', //  four-per-em space
-                '\u2006', //  six-per-em space
-                '\u2007', //  figure space
-                '\u2008', //  punctuation space
-                '\u2009', //  thin space
-                '\u200A', //  hair space
-                '\u2028', //  line separator
-                '\u2029', //  paragraph separator
-                '\u202F', //  narrow no-break space
-                '\u205F', //  medium mathematical space
-                '\u3000', //  ideographic space
-                '\u180E', //  mongolian vowel separator
-                '\u200B', //  zero width space
-                '\u200C', //  zero width non-joiner
-                '\u200D', //  zero width joiner
-                '\u2060', //  word joiner
-                '\uFEFF'  //  zero width non-breaking
-        };
-
         newLineStarted = false;
         lineStartPoint = new Point2D.Float(0,0);
         lineEndPoint = new Point2D.Float(0,0);
         lineText = new StringBuilder();
+        currentPoint = new Point2D.Float(0, 0);
+        linePath = new GeneralPath();
+    }
+
+    public void addListener(ContentStreamListener listener) {
+        listeners.add(listener);
     }
 
     public float getMinLeft() {
@@ -132,10 +144,9 @@ public class PDContentExtractor extends PDFTextStripper {
             try {
                 stripPage(pageIndex);
                 page.addChunks(chunks);
-                //page.addChars(chars);
+                page.addChars(chars);
                 page.addWords(words);
                 page.addLines(lines);
-                page.addRulings(rulings);
                 page.addFrames(frames);
             }
             catch (IOException e) {
@@ -153,10 +164,11 @@ public class PDContentExtractor extends PDFTextStripper {
         words.clear();
         tmpWords.clear();
         lines.clear();
-        rulings.clear();
-        renderingMode.clear();
-        strokingColor.clear();
-        nonStrokingColor.clear();
+        glyphStyles.clear();
+        lastGlyphStyle = null;
+        colors.clear();
+        // The glyphs of the page are not kept until the next page of the worker
+        charactersByArticle.clear();
         newLineStarted = false;
         lineStartPoint.setLocation(0f, 0f);
         lineEndPoint.setLocation(0f, 0f);
@@ -164,13 +176,6 @@ public class PDContentExtractor extends PDFTextStripper {
     }
 
     private void stripPage(int pageIndex) throws IOException {
-        PDPage page = document.getPage(pageIndex);
-        RulingExtractor rulingExtractor = new RulingExtractor(page);
-        List<Ruling> r = rulingExtractor.getRulings();
-        if (r != null) {
-            rulings.addAll(r);
-        }
-
         order = -1; // Each page has own order that starts with 0
         pageIndex += 1; // PDFBox page numbers are 1-based
         setStartPage(pageIndex);
@@ -180,15 +185,30 @@ public class PDContentExtractor extends PDFTextStripper {
 
     }
 
-    private final Map<TextPosition, RenderingMode> renderingMode = new HashMap<>();
-    private final Map<TextPosition, PDColor> strokingColor = new HashMap<>();
-    private final Map<TextPosition, PDColor> nonStrokingColor = new HashMap<>();
+    // Graphics state of every glyph of the page. Glyphs are keyed by identity, as text positions are compared by
+    // value, and a style is shared by the glyphs drawn until the state changes.
+    private final Map<TextPosition, GlyphStyle> glyphStyles = new IdentityHashMap<>();
+    private GlyphStyle lastGlyphStyle;
+    // Converted colors, a color is set once per color operator and shared by the glyphs drawn with it
+    private final Map<PDColor, Color> colors = new IdentityHashMap<>();
+    // Fonts by PDF font, size and rendering mode, the PDF fonts of a document are shared by its pages
+    private static final int MAX_CACHED_FONTS = 4096;
+    private final Map<FontKey, PDFFont> fonts = new HashMap<>();
+    private FontKey lastFont;
 
     @Override
     protected void processTextPosition(TextPosition text) {
-        renderingMode.put(text, getGraphicsState().getTextState().getRenderingMode());
-        strokingColor.put(text, getGraphicsState().getStrokingColor());
-        nonStrokingColor.put(text, getGraphicsState().getNonStrokingColor());
+        for (ContentStreamListener listener: listeners) {
+            listener.showTextPosition(text);
+        }
+        PDGraphicsState state = getGraphicsState();
+        RenderingMode rm = state.getTextState().getRenderingMode();
+        PDColor stroking = state.getStrokingColor();
+        PDColor nonStroking = state.getNonStrokingColor();
+        if (null == lastGlyphStyle || !lastGlyphStyle.is(rm, stroking, nonStroking)) {
+            lastGlyphStyle = new GlyphStyle(rm, stroking, nonStroking);
+        }
+        glyphStyles.put(text, lastGlyphStyle);
         super.processTextPosition(text);
     }
 
@@ -199,12 +219,160 @@ public class PDContentExtractor extends PDFTextStripper {
         super.setEndPage(page);
     }
 
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+        super.startPage(page);
+        currentPoint.setLocation(0f, 0f);
+        linePath.reset();
+        clipWindingRule = -1;
+        for (ContentStreamListener listener: listeners) {
+            listener.startPage(this, page, currentPage);
+        }
+    }
+
     @Override
     protected void endPage(PDPage page) throws IOException {
         newLineStarted = false; // The new line was ended here
         addLine();
         lineText.setLength(0);
         super.endPage(page);
+        for (ContentStreamListener listener: listeners) {
+            listener.endPage(currentPage);
+        }
+    }
+
+    @Override
+    public void beginMarkedContentSequence(COSName tag, COSDictionary properties) {
+        for (ContentStreamListener listener: listeners) {
+            listener.beginMarkedContentSequence(tag, properties);
+        }
+    }
+
+    @Override
+    public void endMarkedContentSequence() {
+        for (ContentStreamListener listener: listeners) {
+            listener.endMarkedContentSequence();
+        }
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException {
+        currentPoint.setLocation(p0);
+        linePath.moveTo(p0.getX(), p0.getY());
+        linePath.lineTo(p1.getX(), p1.getY());
+        linePath.lineTo(p2.getX(), p2.getY());
+        linePath.lineTo(p3.getX(), p3.getY());
+        linePath.closePath();
+        for (ContentStreamListener listener: listeners) {
+            listener.appendRectangle(p0, p1, p2, p3);
+        }
+    }
+
+    @Override
+    public void moveTo(float x, float y) throws IOException {
+        currentPoint.setLocation(x, y);
+        linePath.moveTo(x, y);
+        for (ContentStreamListener listener: listeners) {
+            listener.moveTo(x, y);
+        }
+    }
+
+    @Override
+    public void lineTo(float x, float y) throws IOException {
+        currentPoint.setLocation(x, y);
+        if (null == linePath.getCurrentPoint()) {
+            linePath.moveTo(x, y);
+        } else {
+            linePath.lineTo(x, y);
+        }
+        for (ContentStreamListener listener: listeners) {
+            listener.lineTo(x, y);
+        }
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+        currentPoint.setLocation(x3, y3);
+        if (null == linePath.getCurrentPoint()) {
+            linePath.moveTo(x3, y3);
+        } else {
+            linePath.curveTo(x1, y1, x2, y2, x3, y3);
+        }
+        for (ContentStreamListener listener: listeners) {
+            listener.curveTo(x1, y1, x2, y2, x3, y3);
+        }
+    }
+
+    @Override
+    public Point2D getCurrentPoint() {
+        return currentPoint;
+    }
+
+    @Override
+    public void closePath() throws IOException {
+        if (null != linePath.getCurrentPoint()) {
+            linePath.closePath();
+        }
+        for (ContentStreamListener listener: listeners) {
+            listener.closePath();
+        }
+    }
+
+    @Override
+    public void clip(int windingRule) {
+        clipWindingRule = windingRule;
+    }
+
+    @Override
+    public void endPath() throws IOException {
+        for (ContentStreamListener listener: listeners) {
+            listener.endPath();
+        }
+        finishPath();
+    }
+
+    /**
+     * Clips with the painted or ended path when it was set to clip, as the clipping takes effect after
+     * the path is painted, and starts a new path.
+     */
+    private void finishPath() {
+        if (clipWindingRule != -1) {
+            linePath.setWindingRule(clipWindingRule);
+            getGraphicsState().intersectClippingPath(linePath);
+            clipWindingRule = -1;
+        }
+        linePath.reset();
+    }
+
+    @Override
+    public void strokePath() throws IOException {
+        for (ContentStreamListener listener: listeners) {
+            listener.strokePath();
+        }
+        finishPath();
+    }
+
+    @Override
+    public void fillPath(int windingRule) throws IOException {
+        for (ContentStreamListener listener: listeners) {
+            listener.fillPath(windingRule);
+        }
+        finishPath();
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) throws IOException {
+        for (ContentStreamListener listener: listeners) {
+            listener.fillAndStrokePath(windingRule);
+        }
+        finishPath();
+    }
+
+    @Override
+    public void drawImage(PDImageXObject image) throws IOException {
+        for (ContentStreamListener listener: listeners) {
+            listener.drawImage(image);
+        }
     }
 
     @Override
@@ -254,138 +422,272 @@ public class PDContentExtractor extends PDFTextStripper {
         this.lines.add(line);
     }
     private Color getColor(TextPosition textPosition) throws IOException {
-        RenderingMode rm = renderingMode.get(textPosition);
+        GlyphStyle style = glyphStyles.get(textPosition);
+        RenderingMode rm = null == style ? null : style.renderingMode;
         if (rm == RenderingMode.FILL || rm == RenderingMode.NEITHER) {
-            PDColor pdColor = nonStrokingColor.get(textPosition);
-            Color color;
-            try {
-                color = new Color(pdColor.toRGB());
-            } catch (UnsupportedOperationException e) {
-                color = new Color(0);
+            PDColor pdColor = style.nonStrokingColor;
+            Color color = colors.get(pdColor);
+            if (null == color) {
+                try {
+                    color = new Color(pdColor.toRGB());
+                } catch (UnsupportedOperationException e) {
+                    color = new Color(0);
+                }
+                colors.put(pdColor, color);
             }
             return color;
         }
         if (rm == RenderingMode.STROKE) {
-            PDColor pdColor = strokingColor.get(textPosition);
-            return new Color(pdColor.toRGB());
+            PDColor pdColor = style.strokingColor;
+            Color color = colors.get(pdColor);
+            if (null == color) {
+                color = new Color(pdColor.toRGB());
+                colors.put(pdColor, color);
+            }
+            return color;
         }
         return Color.BLACK;
     }
 
+    private RenderingMode getRenderingMode(TextPosition textPosition) {
+        GlyphStyle style = glyphStyles.get(textPosition);
+        return null == style ? null : style.renderingMode;
+    }
+
+    /**
+     * Returns the font of the text position. Fonts are interned by PDF font, size and rendering mode, so the style
+     * of a font is determined once and text positions of the same font share one PDFFont.
+     */
     private PDFFont getFont(TextPosition textPosition) {
         PDFont pdFont = textPosition.getFont();
         float fontSize = textPosition.getFontSizeInPt();
         if (null == pdFont)
             return null;
 
+        RenderingMode rm = getRenderingMode(textPosition);
+        // Text positions mostly come in runs of the same font
+        if (null != lastFont && lastFont.pdFont == pdFont && lastFont.fontSize == fontSize && lastFont.renderingMode == rm) {
+            return fonts.get(lastFont);
+        }
+
+        FontKey key = new FontKey(pdFont, fontSize, rm);
+        if (!fonts.containsKey(key)) {
+            if (fonts.size() >= MAX_CACHED_FONTS) {
+                fonts.clear();
+            }
+            fonts.put(key, createFont(pdFont, fontSize, rm));
+        }
+        lastFont = key;
+        return fonts.get(key);
+    }
+
+    private PDFFont createFont(PDFont pdFont, float fontSize, RenderingMode rm) {
         String name = pdFont.getName();
         if (null == name)
             return null;
 
-        PDFFont result = new PDFFont();
-        result.setFontSize(fontSize);
-        result.setName(name);
-        final boolean isBoldFontName = name.toLowerCase().contains("bold");
-        final boolean isItalicFontName = name.toLowerCase().contains("italic");
+        final String lowerCaseName = name.toLowerCase();
+        final boolean isBoldFontName = lowerCaseName.contains("bold");
+        final boolean isItalicFontName = lowerCaseName.contains("italic");
         PDFontDescriptor desc = pdFont.getFontDescriptor();
+        float height = 0;
+        boolean italic = false;
         boolean isForceBold = false;
         if (null != desc) {
-            float height = desc.getCapHeight();
             // TODO: Clarify the calculation of the font height. It seems as a not real font height.
-            result.setHeight(height);
-
-            boolean italic = desc.isItalic();
-
-            if (italic) {
-                result.setItalic(true);
-            } else if (name.toLowerCase().contains("oblique")) {
-                result.setItalic(true);
-            } else if (isItalicFontName) {
-                result.setItalic(true);
-            } else {
-                result.setItalic(false);
-            }
-
+            height = desc.getCapHeight();
+            italic = desc.isItalic() || lowerCaseName.contains("oblique") || isItalicFontName;
             isForceBold = desc.isForceBold();
         }
 
         // Calculating that the font is bold
-        if (isForceBold) {
-            result.setBold(true);
+        boolean bold = isForceBold || isBoldFontName || rm == RenderingMode.FILL_STROKE;
+
+        return new PDFFont(name, fontSize, height, bold, italic);
+    }
+
+    private static final class GlyphStyle {
+        private final RenderingMode renderingMode;
+        private final PDColor strokingColor;
+        private final PDColor nonStrokingColor;
+
+        private GlyphStyle(RenderingMode renderingMode, PDColor strokingColor, PDColor nonStrokingColor) {
+            this.renderingMode = renderingMode;
+            this.strokingColor = strokingColor;
+            this.nonStrokingColor = nonStrokingColor;
         }
-        else if (isBoldFontName) {
-            result.setBold(true);
+
+        // Colors are replaced, not changed, by the color operators, so the same objects mean the same state
+        private boolean is(RenderingMode renderingMode, PDColor strokingColor, PDColor nonStrokingColor) {
+            return this.renderingMode == renderingMode && this.strokingColor == strokingColor
+                    && this.nonStrokingColor == nonStrokingColor;
         }
-        else {
-            RenderingMode rm = renderingMode.get(textPosition);
-            if (rm == RenderingMode.FILL_STROKE) {
-                result.setBold(true);
-            }
-            else {
-                result.setBold(false);
-            }
+    }
+
+    private static final class FontKey {
+        private final PDFont pdFont;
+        private final float fontSize;
+        private final RenderingMode renderingMode;
+
+        private FontKey(PDFont pdFont, float fontSize, RenderingMode renderingMode) {
+            this.pdFont = pdFont;
+            this.fontSize = fontSize;
+            this.renderingMode = renderingMode;
         }
 
-        return result;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FontKey)) return false;
+            FontKey key = (FontKey) o;
+            return pdFont == key.pdFont && Float.compare(fontSize, key.fontSize) == 0 && renderingMode == key.renderingMode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(pdFont);
+            result = 31 * result + Float.hashCode(fontSize);
+            result = 31 * result + (renderingMode != null ? renderingMode.hashCode() : 0);
+            return result;
+        }
     }
 
-    private boolean containsWhitespace(String text) {
-        for (char c : text.toCharArray())
-            for (char wordSeparator : whitespaces)
-                if (c == wordSeparator)
-                    return true;
+    private static boolean containsWhitespace(String text) {
+        for (int i = 0; i < text.length(); i++)
+            if (isWhitespace(text.charAt(i)))
+                return true;
 
         return false;
     }
 
+    /**
+     * Returns true if the char separates words: a Unicode space, a line break or a zero width char.
+     */
+    private static boolean isWhitespace(char c) {
+        // Most chars are printable ones below the spaces
+        if (c < '\u0085' && c != '\u0020' && c > '\r')
+            return false;
+
+        switch (c) {
+            case '\u0020': //  space
+            case '\u00A0': //  no-break space
+            case '\u0009': //  character tabulation
+            case '\n':     //  line feed
+            case '\u000B': //  line tabulation
+            case '\u000C': //  form feed
+            case '\r':     //  carriage return
+            case '\u0085': //  next line
+            case '\u1680': //  ogham space mark
+            case '\u2000': //  en quad
+            case '\u2001': //  em quad
+            case '\u2002': //  en space
+            case '\u2003': //  em space
+            case '\u2004': //  three-per-em space
+            case '\u2005': //  four-per-em space
+            case '\u2006': //  six-per-em space
+            case '\u2007': //  figure space
+            case '\u2008': //  punctuation space
+            case '\u2009': //  thin space
+            case '\u200A': //  hair space
+            case '\u2028': //  line separator
+            case '\u2029': //  paragraph separator
+            case '\u202F': //  narrow no-break space
+            case '\u205F': //  medium mathematical space
+            case '\u3000': //  ideographic space
+            case '\u180E': //  mongolian vowel separator
+            case '\u200B': //  zero width space
+            case '\u200C': //  zero width non-joiner
+            case '\u200D': //  zero width joiner
+            case '\u2060': //  word joiner
+            case '\uFEFF': //  zero width non-breaking
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int compareByPosition(TextPosition tp1, TextPosition tp2) {
+        int result = Float.compare(tp1.getYDirAdj(), tp2.getYDirAdj());
+        return result != 0 ? result : Float.compare(tp1.getXDirAdj(), tp2.getXDirAdj());
+    }
+
+    private static boolean isSortedByPosition(List<TextPosition> textPositions) {
+        for (int i = 1; i < textPositions.size(); i++)
+            if (compareByPosition(textPositions.get(i - 1), textPositions.get(i)) > 0)
+                return false;
+
+        return true;
+    }
+
     private void extractWords(int order, List<TextPosition> textPositions) throws IOException {
         if (null == textPositions || textPositions.isEmpty()) return;
 
-        if (textPositions.size() > 1)
-            textPositions.sort(Comparator.comparing(TextPosition::getYDirAdj).thenComparing(TextPosition::getXDirAdj));
+        // Text positions mostly come in reading order already
+        if (!isSortedByPosition(textPositions))
+            textPositions.sort(PDContentExtractor::compareByPosition);
 
         final StringBuilder sb = new StringBuilder(textPositions.size());
         boolean newWordStarted = false;
 
-
-        // Word coordinates
-        PDFRectangle wordBBox = new PDFRectangle(0f,0f ,0f,0f);
+        // Word coordinates, kept as the rectangle of a word would keep them
+        double wordLeft = 0;
+        double wordTop = 0;
+        double wordWidth = 0;
+        double wordHeight = 0;
 
         int numberTpInWord = 0;
         int indexTp = 0;
 
         for (TextPosition tp: textPositions) {
-            if (!isWordChar(tp)){continue;}
+            String text = getTextTp(tp);
+            if (!isWordChar(tp, text)){continue;}
 
-            if (newWordStarted) {
-                if (isNear(wordBBox, tp)) {
-                    joinTpAndWord(tp, wordBBox, sb);
-                    numberTpInWord += 1;
-                }
-                else {
+            // Text position coordinates
+            final double left = tp.getXDirAdj();
+            final double top = tp.getYDirAdj() - tp.getHeightDir();
+            final double width = tp.getWidthDirAdj();
+            final double height = tp.getHeightDir();
+
+            if (newWordStarted && Math.abs(wordLeft + wordWidth - left) < tp.getWidthOfSpace() * 0.4) {
+                // The text position is near the word, so it is joined to the word
+                sb.append(text);
+                wordWidth = left + width - wordLeft;
+
+                if (wordTop > top)
+                    wordTop = top;
+
+                if (wordTop + wordHeight < top + height)
+                    wordHeight = top + height - wordTop;
+
+                numberTpInWord += 1;
+            }
+            else {
+                if (newWordStarted) {
                     TextPosition centerTp = textPositions.get(indexTp-numberTpInWord/2);
-                    addWordToWordList(wordBBox, sb, order, centerTp);
+                    addWordToWordList(wordLeft, wordTop, wordWidth, wordHeight, sb, order, centerTp);
                     numberTpInWord = 0;
-                    setWordFromTp(wordBBox, tp, sb);
                 }
-            }
-            else {
                 newWordStarted = true;
-                setWordFromTp(wordBBox, tp, sb);
+                sb.setLength(0);
+                sb.append(text);
+                wordLeft = left;
+                wordTop = top;
+                wordWidth = width;
+                wordHeight = height;
             }
             indexTp += 1;
         }
 
         if (newWordStarted) {
             TextPosition tp = textPositions.get(indexTp-1);
-            addWordToWordList(wordBBox, sb, order, tp);
+            addWordToWordList(wordLeft, wordTop, wordWidth, wordHeight, sb, order, tp);
         }
     }
 
-    private void addWordToWordList(PDFRectangle wordBBoc,
+    private void addWordToWordList(double left, double top, double width, double height,
                                    StringBuilder sb, int order, TextPosition tpWithStyle){
         String wordText = sb.toString();
-        TextChunk word = new TextChunk(wordBBoc, wordText, currentPage);
+        TextChunk word = new TextChunk(left, top, left + width, top + height, wordText, currentPage);
         PDFFont wordFont = getFont(tpWithStyle);
         Color color = null;
         try {
@@ -394,7 +696,6 @@ public class PDContentExtractor extends PDFTextStripper {
             throw new RuntimeException(e);
         }
         word.setFont(wordFont);
-        word.updateTextLine();
         word.setColor(color);
         word.setSpaceWidth(tpWithStyle.getWidthOfSpace());
         word.setStartOrder(order);
@@ -404,27 +705,7 @@ public class PDContentExtractor extends PDFTextStripper {
         tmpWords.add(word);
     }
 
-    private void joinTpAndWord(TextPosition tp, PDFRectangle wordBBox, StringBuilder sbWord){
-        final PDFRectangle tpBBox = new PDFRectangle(tp);
-        sbWord.append(getTextTp(tp));
-        wordBBox.setRight(tpBBox.getRight());
-
-        if (wordBBox.getTop() > tpBBox.getTop())
-            wordBBox.setTop(tpBBox.getTop());
-
-        if (wordBBox.getBottom() < tpBBox.getBottom())
-            wordBBox.setBottom(tpBBox.getBottom());
-    }
-
-    private void setWordFromTp(PDFRectangle wordBBox, TextPosition tp, StringBuilder sb){
-        final PDFRectangle tpBBox = new PDFRectangle(tp);
-        sb.setLength(0);
-        sb.append(getTextTp(tp));
-        wordBBox.setPDFRectangle(tpBBox);
-    }
-
-    private boolean isWordChar(TextPosition tp){
-        String text = getTextTp(tp);
+    private boolean isWordChar(TextPosition tp, String text){
         if (text == null || text.isEmpty()) return false;
         if (containsWhitespace(text)) return false;
 
@@ -446,15 +727,10 @@ public class PDContentExtractor extends PDFTextStripper {
     private String getTextTp(TextPosition tp){
         String text = tp.getUnicode();
         //ToDO: Fix it. Embedded fonts
-        if (tp.getUnicode().equals("\uF0B7")){text = "•";}
+        if ("\uF0B7".equals(text)){text = "•";}
         return text;
     }
 
-    private  boolean isNear(PDFRectangle wordBBox,  TextPosition tp){
-        final PDFRectangle tpBBox = new PDFRectangle(tp);
-        return Math.abs(wordBBox.getRight() - tpBBox.getLeft()) < tp.getWidthOfSpace() * 0.4;
-    }
-
     @Override
     protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
         // Increment the order an original chunk in its PDF document
@@ -489,17 +765,18 @@ public class PDContentExtractor extends PDFTextStripper {
         float maxRight = Float.MIN_VALUE;
 
         // Char processing
+        final boolean keepChars = details.contains(TextDetail.CHARS);
         for (TextPosition tp: textPositions) {
-            final String text  = tp.getUnicode();
-
             // Char coordinates
             final float left   = tp.getXDirAdj();
             final float top    = tp.getYDirAdj() - tp.getHeightDir();
             final float right  = tp.getXDirAdj() + tp.getWidthDirAdj();
             final float bottom = tp.getYDirAdj();
 
-            TextChunk character = new TextChunk(left, top, right, bottom, text, currentPage);
-            chars.add(character);
+            if (keepChars) {
+                TextChunk character = new TextChunk(left, top, right, bottom, tp.getUnicode(), currentPage);
+                chars.add(character);
+            }
 
             // Line coordinates
             if (minLeft > left)     minLeft = left;
@@ -508,13 +785,17 @@ public class PDContentExtractor extends PDFTextStripper {
             if (maxBottom < bottom) maxBottom = bottom;
         }
 
-        // Chunk processing
-        TextChunk chunk = new TextChunk(minLeft, minTop, maxRight, maxBottom, string, currentPage);
+        // Chunk processing, the text positions are kept with their chunk
+        final boolean keepPositions = details.contains(TextDetail.POSITIONS);
+        if (keepPositions || details.contains(TextDetail.CHUNKS)) {
+            TextChunk chunk = new TextChunk(minLeft, minTop, maxRight, maxBottom, string, currentPage);
 
-        chunk.addAllTextPositions(textPositions);
+            if (keepPositions)
+                chunk.addAllTextPositions(textPositions);
 
-        chunk.setStartOrder(order);
-        chunks.add(chunk);
+            chunk.setStartOrder(order);
+            chunks.add(chunk);
+        }
 
         // Line processing
         // TODO modify line extraction
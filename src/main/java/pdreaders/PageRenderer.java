@@ -0,0 +1,249 @@
+package pdreaders;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.blend.BlendMode;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+import org.apache.pdfbox.rendering.RenderDestination;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Renders pages of an open document. One PDFRenderer is kept for the document, so fonts and images loaded
+ * for a page stay cached for the next ones, and rendered images are drawn into buffers returned by
+ * {@link #release(BufferedImage)}. A renderer is used by one thread at a time.
+ */
+public class PageRenderer {
+
+    private final PDDocument pdDocument;
+    private final PDFRenderer renderer;
+    private final float scale;
+    private final ImageType imageType;
+    private final int bufferedImageType;
+    private final int poolSize;
+    private final Deque<BufferedImage> pool;
+
+    private PageRenderer(Builder builder) {
+        this.pdDocument = builder.pdDocument;
+        this.renderer = builder.graphicsOnly ? new GraphicsOnlyRenderer(pdDocument) : new PDFRenderer(pdDocument);
+        this.scale = builder.dpi / 72f;
+        this.imageType = builder.imageType;
+        this.bufferedImageType = toBufferedImageType(imageType);
+        this.poolSize = builder.poolSize;
+        this.pool = new ArrayDeque<>(poolSize);
+    }
+
+    /**
+     * Renders the page the same way as PDFRenderer.renderImage does. The image should be passed to
+     * {@link #release(BufferedImage)} when it is not used anymore.
+     */
+    public BufferedImage render(int pageIndex) throws IOException {
+        PDPage page = pdDocument.getPage(pageIndex);
+
+        // Blend modes are rendered on a transparent image and converted, leave it to PDFRenderer
+        if (imageType != ImageType.ARGB && hasBlendMode(page)) {
+            return renderer.renderImage(pageIndex, scale, imageType, RenderDestination.EXPORT);
+        }
+
+        PDRectangle cropBox = page.getCropBox();
+        int widthPx = (int) Math.max(Math.floor(cropBox.getWidth() * scale), 1);
+        int heightPx = (int) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+        if ((long) widthPx * (long) heightPx > Integer.MAX_VALUE) {
+            throw new IOException("Maximum size of image exceeded (w * h * scale ^ 2) = " + cropBox.getWidth() +
+                    " * " + cropBox.getHeight() + " * " + scale + " ^ 2 > " + Integer.MAX_VALUE);
+        }
+        int rotation = page.getRotation();
+        BufferedImage image = rotation == 90 || rotation == 270 ? borrow(heightPx, widthPx) : borrow(widthPx, heightPx);
+
+        Graphics2D graphics = image.createGraphics();
+        try {
+            if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+                graphics.setBackground(new Color(0, 0, 0, 0));
+            } else {
+                graphics.setBackground(Color.WHITE);
+            }
+            graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+            renderer.renderPageToGraphics(pageIndex, graphics, scale, scale, RenderDestination.EXPORT);
+        } catch (IOException | RuntimeException e) {
+            release(image);
+            throw e;
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Returns a rendered image to the pool, so it can be drawn over by a next page of the same size.
+     */
+    public void release(BufferedImage image) {
+        if (image == null || poolSize <= 0 || image.getType() != bufferedImageType) {
+            return;
+        }
+        if (pool.size() >= poolSize) {
+            pool.removeLast();
+        }
+        pool.addFirst(image);
+    }
+
+    private BufferedImage borrow(int width, int height) {
+        for (Iterator<BufferedImage> iterator = pool.iterator(); iterator.hasNext(); ) {
+            BufferedImage image = iterator.next();
+            if (image.getWidth() == width && image.getHeight() == height) {
+                iterator.remove();
+                return image;
+            }
+        }
+        return new BufferedImage(width, height, bufferedImageType);
+    }
+
+    private static int toBufferedImageType(ImageType imageType) {
+        switch (imageType) {
+            case BINARY:
+                return BufferedImage.TYPE_BYTE_BINARY;
+            case GRAY:
+                return BufferedImage.TYPE_BYTE_GRAY;
+            case ARGB:
+                return BufferedImage.TYPE_INT_ARGB;
+            default:
+                return BufferedImage.TYPE_INT_RGB;
+        }
+    }
+
+    private static boolean hasBlendMode(PDPage page) {
+        PDResources resources = page.getResources();
+        if (resources == null) {
+            return false;
+        }
+        for (COSName name: resources.getExtGStateNames()) {
+            PDExtendedGraphicsState extGState = resources.getExtGState(name);
+            if (extGState != null && extGState.getBlendMode() != BlendMode.NORMAL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Builder {
+        private final PDDocument pdDocument;
+        private float dpi = 72;
+        private ImageType imageType = ImageType.RGB;
+        private boolean graphicsOnly = false;
+        private int poolSize = 2;
+
+        public Builder(PDDocument pdDocument) {
+            this.pdDocument = pdDocument;
+        }
+
+        public Builder setDpi(float dpi) {
+            this.dpi = dpi;
+            return this;
+        }
+
+        public Builder setImageType(ImageType imageType) {
+            this.imageType = imageType;
+            return this;
+        }
+
+        /**
+         * Draws page graphics without text and XObjects. Annotation appearances are drawn unchanged.
+         */
+        public Builder setGraphicsOnly(boolean graphicsOnly) {
+            this.graphicsOnly = graphicsOnly;
+            return this;
+        }
+
+        public Builder setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public PageRenderer createPageRenderer() {
+            if (null == pdDocument) {
+                throw new IllegalArgumentException("PDDocument cannot be null");
+            }
+            return new PageRenderer(this);
+        }
+    }
+
+    private static class GraphicsOnlyRenderer extends PDFRenderer {
+
+        private GraphicsOnlyRenderer(PDDocument document) {
+            super(document);
+        }
+
+        @Override
+        protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+            return new GraphicsOnlyPageDrawer(parameters);
+        }
+    }
+
+    private static class GraphicsOnlyPageDrawer extends PageDrawer {
+
+        private int annotationLevel = 0;
+
+        private GraphicsOnlyPageDrawer(PageDrawerParameters parameters) throws IOException {
+            super(parameters);
+        }
+
+        private boolean isSuppressed() {
+            return annotationLevel == 0;
+        }
+
+        @Override
+        protected void showText(byte[] string) throws IOException {
+            if (!isSuppressed()) {
+                super.showText(string);
+            }
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) throws IOException {
+            // Inline images were never removed, only image XObjects
+            if (!isSuppressed() || !(pdImage instanceof PDImageXObject)) {
+                super.drawImage(pdImage);
+            }
+        }
+
+        @Override
+        public void showForm(PDFormXObject form) throws IOException {
+            if (!isSuppressed()) {
+                super.showForm(form);
+            }
+        }
+
+        @Override
+        public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+            if (!isSuppressed()) {
+                super.showTransparencyGroup(form);
+            }
+        }
+
+        @Override
+        public void showAnnotation(PDAnnotation annotation) throws IOException {
+            annotationLevel++;
+            try {
+                super.showAnnotation(annotation);
+            } finally {
+                annotationLevel--;
+            }
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package pdreaders;
 
+import interfaces.ContentStreamListener;
+import model.Page;
 import model.Ruling;
-import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
-import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -12,9 +13,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class RulingExtractor extends PDFGraphicsStreamEngine {
+public class RulingExtractor implements ContentStreamListener {
 
-    private final float pageHeight;
+    private PDFStreamEngine engine;
+    private float pageHeight;
 
     private List<Ruling> rulings;
     private List<Ruling> tmpRulings;
@@ -30,23 +32,25 @@ public class RulingExtractor extends PDFGraphicsStreamEngine {
         lastMoveToPoint = new Point2D.Float(0f, 0f);
     }
 
-    public RulingExtractor(PDPage page) {
-        super(page);
-        pageHeight = getPage().getBBox().getHeight();
+    @Override
+    public void startPage(PDFStreamEngine engine, PDPage pdPage, Page page) {
+        this.engine = engine;
+        pageHeight = pdPage.getBBox().getHeight();
+        rulings = new ArrayList<>();
+        tmpRulings.clear();
+        rectangles.clear();
+        currentPoint.setLocation(0f, 0f);
+        lastMoveToPoint.setLocation(0f, 0f);
     }
 
-    public List<Ruling> getRulings() {
-        run();
-        return rulings.isEmpty() ? null : rulings;
+    @Override
+    public void endPage(Page page) {
+        page.addRulings(rulings);
+        engine = null;
     }
 
-    private void run() {
-        try {
-            processPage(getPage());
-        }
-        catch (IOException | IllegalArgumentException e) {
-            System.err.println(e.getLocalizedMessage());
-        }
+    private PDGraphicsState getGraphicsState() {
+        return engine.getGraphicsState();
     }
 
     @Override
@@ -66,14 +70,6 @@ public class RulingExtractor extends PDFGraphicsStreamEngine {
         rectangles.add(new Rectangle2D.Float(p0x, p0y, p1x, p1y));
     }
 
-    @Override
-    public void drawImage(PDImage pdImage) throws IOException {
-    }
-
-    @Override
-    public void clip(int windingRule) throws IOException {
-    }
-
     @Override
     public void moveTo(float x, float y) throws IOException {
         currentPoint.setLocation(x, y);
@@ -93,15 +89,6 @@ public class RulingExtractor extends PDFGraphicsStreamEngine {
         currentPoint.setLocation(x, y);
     }
 
-    @Override
-    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
-    }
-
-    @Override
-    public Point2D getCurrentPoint() throws IOException {
-        return currentPoint;
-    }
-
     @Override
     public void closePath() throws IOException {
         float x1 = currentPoint.x;
@@ -157,9 +144,4 @@ public class RulingExtractor extends PDFGraphicsStreamEngine {
         tmpRulings.clear();
     }
 
-    @Override
-    public void shadingFill(COSName shadingName) throws IOException {
-        //System.out.println(shadingName.getName());
-    }
-
 }
@@ -0,0 +1,12 @@
+package pdreaders;
+
+/**
+ * How the visible rulings of a page are detected.
+ * RASTER renders the page graphics and scans the pixels, VECTOR takes the stroked and filled paths of the
+ * content stream, AUTO takes the vector rulings and renders only pages without them that carry images.
+ */
+public enum RulingMode {
+    RASTER,
+    VECTOR,
+    AUTO;
+}
@@ -0,0 +1,12 @@
+package pdreaders;
+
+/**
+ * Optional text granularities kept by the content extractor besides the words and text lines, which the
+ * extraction always needs. CHUNKS keeps the original text chunks of the content stream, CHARS a chunk per
+ * character, and POSITIONS the text positions of every chunk, which implies the chunks.
+ */
+public enum TextDetail {
+    CHUNKS,
+    CHARS,
+    POSITIONS;
+}
@@ -0,0 +1,373 @@
+package pdreaders;
+
+import interfaces.ContentStreamListener;
+import model.Page;
+import model.Ruling;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects the visible rulings of a page from its vector graphics, without rendering the page.
+ * Stroked segments and the edges of filled shapes are taken when their color differs from a white background
+ * as much as the raster detection requires, thin filled rectangles are taken as their center line.
+ * Only the parts of the segments inside the clipping path, which starts as the crop box, are taken, as only they
+ * are drawn. The rulings are built in the 144 DPI render coordinates and rounded to whole pixels, so they are
+ * snapped, collapsed and scaled the same way as the raster ones and their positions are as precise as those.
+ */
+public class VectorRulingExtractor implements ContentStreamListener {
+
+    private static final float SCALE = 144f / 72f;
+    private static final float THIN_RECTANGLE_MAXIMUM = 3 * SCALE;
+    private static final float AXIS_DEVIATION_MAXIMUM = 1f;
+
+    private PDFStreamEngine engine;
+    private final AffineTransform pageTransform;
+    private final List<SubPath> path;
+    private final List<Ruling> horizontalRulings;
+    private final List<Ruling> verticalRulings;
+    // The clipping path of the path being painted in render coordinates, null when it is the clip rectangle
+    private Area clip;
+    private Rectangle2D clipRectangle;
+
+    public VectorRulingExtractor() {
+        pageTransform = new AffineTransform();
+        path = new ArrayList<>();
+        horizontalRulings = new ArrayList<>(200);
+        verticalRulings = new ArrayList<>(200);
+    }
+
+    @Override
+    public void startPage(PDFStreamEngine engine, PDPage pdPage, Page page) {
+        this.engine = engine;
+        path.clear();
+        horizontalRulings.clear();
+        verticalRulings.clear();
+
+        // The same transformation PDFRenderer and PageDrawer apply to the page
+        PDRectangle cropBox = pdPage.getCropBox();
+        pageTransform.setToScale(SCALE, SCALE);
+        int rotation = pdPage.getRotation();
+        if (rotation != 0) {
+            float translateX = 0;
+            float translateY = 0;
+            switch (rotation) {
+                case 90:
+                    translateX = cropBox.getHeight();
+                    break;
+                case 270:
+                    translateY = cropBox.getWidth();
+                    break;
+                case 180:
+                    translateX = cropBox.getWidth();
+                    translateY = cropBox.getHeight();
+                    break;
+                default:
+                    break;
+            }
+            pageTransform.translate(translateX, translateY);
+            pageTransform.rotate(Math.toRadians(rotation));
+        }
+        pageTransform.translate(0, cropBox.getHeight());
+        pageTransform.scale(1, -1);
+        pageTransform.translate(-cropBox.getLowerLeftX(), -cropBox.getLowerLeftY());
+    }
+
+    @Override
+    public void endPage(Page page) {
+        try {
+            if (!horizontalRulings.isEmpty() || !verticalRulings.isEmpty()) {
+                VisibleRulingExtractor.addVisibleRulings(page, new ArrayList<>(horizontalRulings),
+                        new ArrayList<>(verticalRulings));
+            }
+        } finally {
+            engine = null;
+            path.clear();
+            horizontalRulings.clear();
+            verticalRulings.clear();
+        }
+    }
+
+    private PDGraphicsState getGraphicsState() {
+        return engine.getGraphicsState();
+    }
+
+    private Point2D.Float toDevice(float x, float y) {
+        Point2D.Float point = new Point2D.Float(x, y);
+        pageTransform.transform(point, point);
+        return point;
+    }
+
+    private SubPath currentSubPath() {
+        return path.isEmpty() ? null : path.get(path.size() - 1);
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException {
+        SubPath subPath = new SubPath(toDevice((float) p0.getX(), (float) p0.getY()));
+        subPath.lineTo(toDevice((float) p1.getX(), (float) p1.getY()));
+        subPath.lineTo(toDevice((float) p2.getX(), (float) p2.getY()));
+        subPath.lineTo(toDevice((float) p3.getX(), (float) p3.getY()));
+        subPath.close();
+        path.add(subPath);
+    }
+
+    @Override
+    public void moveTo(float x, float y) throws IOException {
+        path.add(new SubPath(toDevice(x, y)));
+    }
+
+    @Override
+    public void lineTo(float x, float y) throws IOException {
+        SubPath subPath = currentSubPath();
+        if (subPath == null) {
+            moveTo(x, y);
+        } else {
+            subPath.lineTo(toDevice(x, y));
+        }
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+        SubPath subPath = currentSubPath();
+        if (subPath == null) {
+            moveTo(x3, y3);
+        } else {
+            subPath.curveTo(toDevice(x1, y1), toDevice(x2, y2), toDevice(x3, y3));
+        }
+    }
+
+    @Override
+    public void closePath() throws IOException {
+        SubPath subPath = currentSubPath();
+        if (subPath != null) {
+            subPath.close();
+        }
+    }
+
+    @Override
+    public void endPath() throws IOException {
+        path.clear();
+    }
+
+    @Override
+    public void strokePath() throws IOException {
+        if (isStrokeVisible()) {
+            addStrokedRulings();
+        }
+        path.clear();
+    }
+
+    @Override
+    public void fillPath(int windingRule) throws IOException {
+        if (isFillVisible()) {
+            addFilledRulings();
+        }
+        path.clear();
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) throws IOException {
+        if (isFillVisible()) {
+            addFilledRulings();
+        }
+        if (isStrokeVisible()) {
+            addStrokedRulings();
+        }
+        path.clear();
+    }
+
+    private boolean isStrokeVisible() {
+        PDGraphicsState state = getGraphicsState();
+        // Dashed lines are split into short pieces when rendered
+        if (state.getLineDashPattern() != null && state.getLineDashPattern().getDashArray().length > 0) {
+            return false;
+        }
+        return isVisible(state.getStrokingColor(), state.getAlphaConstant());
+    }
+
+    private boolean isFillVisible() {
+        PDGraphicsState state = getGraphicsState();
+        return isVisible(state.getNonStrokingColor(), state.getNonStrokeAlphaConstant());
+    }
+
+    /**
+     * Checks whether the color painted with the given opacity on white differs from white
+     * as much as an edge the raster detection finds.
+     */
+    private boolean isVisible(PDColor color, double alpha) {
+        if (color == null || alpha <= 0) {
+            return false;
+        }
+        int rgb;
+        try {
+            rgb = color.toRGB();
+        } catch (IOException | UnsupportedOperationException e) {
+            // Patterns and unknown color spaces are taken as visible
+            return true;
+        }
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        double gray = 0.299 * r + 0.587 * g + 0.114 * b;
+        return (255 - gray) * Math.min(alpha, 1) > VisibleRulingExtractor.GRAYSCALE_INTENSITY_THRESHOLD;
+    }
+
+    /**
+     * Takes the clipping path of the graphics state for the path being painted.
+     */
+    private void updateClip() {
+        Area area = getGraphicsState().getCurrentClippingPath();
+        if (area.isRectangular()) {
+            clip = null;
+            clipRectangle = pageTransform.createTransformedShape(area.getBounds2D()).getBounds2D();
+        } else {
+            clip = area.createTransformedArea(pageTransform);
+            clipRectangle = clip.getBounds2D();
+        }
+    }
+
+    private void addStrokedRulings() {
+        updateClip();
+        for (SubPath subPath: path) {
+            for (Line2D.Float line: subPath.lines) {
+                addRuling(line.x1, line.y1, line.x2, line.y2);
+            }
+        }
+    }
+
+    private void addFilledRulings() {
+        updateClip();
+        for (SubPath subPath: path) {
+            Rectangle2D bounds = subPath.bounds;
+
+            if (bounds.getHeight() < THIN_RECTANGLE_MAXIMUM && bounds.getWidth() > bounds.getHeight()) {
+                float y = (float) bounds.getCenterY();
+                addRuling((float) bounds.getMinX(), y, (float) bounds.getMaxX(), y);
+            } else if (bounds.getWidth() < THIN_RECTANGLE_MAXIMUM && bounds.getHeight() > bounds.getWidth()) {
+                float x = (float) bounds.getCenterX();
+                addRuling(x, (float) bounds.getMinY(), x, (float) bounds.getMaxY());
+            } else {
+                // A filled area is closed implicitly, its edges are seen by the raster detection
+                for (Line2D.Float line: subPath.lines) {
+                    addRuling(line.x1, line.y1, line.x2, line.y2);
+                }
+                if (!subPath.closed) {
+                    addRuling(subPath.current.x, subPath.current.y, subPath.start.x, subPath.start.y);
+                }
+            }
+        }
+    }
+
+    private void addRuling(float x1, float y1, float x2, float y2) {
+        if (Math.abs(y1 - y2) <= AXIS_DEVIATION_MAXIMUM) {
+            float[] span = clip((y1 + y2) / 2, Math.min(x1, x2), Math.max(x1, x2), true);
+            if (null == span) {
+                return;
+            }
+            int y = Math.round((y1 + y2) / 2);
+            int left = Math.round(span[0]);
+            int right = Math.round(span[1]);
+            if (right - left > VisibleRulingExtractor.HORIZONTAL_EDGE_WIDTH_MINIMUM) {
+                horizontalRulings.add(new Ruling(new Point2D.Float(left, y), new Point2D.Float(right, y)));
+            }
+        } else if (Math.abs(x1 - x2) <= AXIS_DEVIATION_MAXIMUM) {
+            float[] span = clip((x1 + x2) / 2, Math.min(y1, y2), Math.max(y1, y2), false);
+            if (null == span) {
+                return;
+            }
+            int x = Math.round((x1 + x2) / 2);
+            int top = Math.round(span[0]);
+            int bottom = Math.round(span[1]);
+            if (bottom - top > VisibleRulingExtractor.VERTICAL_EDGE_HEIGHT_MINIMUM) {
+                verticalRulings.add(new Ruling(new Point2D.Float(x, top), new Point2D.Float(x, bottom)));
+            }
+        }
+    }
+
+    /**
+     * Returns the start and end of the part of a segment inside the clipping path, or null when no part is.
+     * A horizontal segment lies at the position y from start to end along x, a vertical one at the position x
+     * along y. Within a clip that is not a rectangle the part spans all pieces of the segment inside it.
+     */
+    private float[] clip(float position, float start, float end, boolean horizontal) {
+        Rectangle2D bounds = clipRectangle;
+        double minPosition = horizontal ? bounds.getMinY() : bounds.getMinX();
+        double maxPosition = horizontal ? bounds.getMaxY() : bounds.getMaxX();
+        if (!(minPosition <= position && position <= maxPosition)) {
+            return null;
+        }
+        float clippedStart = (float) Math.max(start, horizontal ? bounds.getMinX() : bounds.getMinY());
+        float clippedEnd = (float) Math.min(end, horizontal ? bounds.getMaxX() : bounds.getMaxY());
+        if (!(clippedStart < clippedEnd)) {
+            return null;
+        }
+        if (null != clip) {
+            // A pixel wide strip along the segment
+            Area part = new Area(horizontal
+                    ? new Rectangle2D.Float(clippedStart, position - 0.5f, clippedEnd - clippedStart, 1)
+                    : new Rectangle2D.Float(position - 0.5f, clippedStart, 1, clippedEnd - clippedStart));
+            part.intersect(clip);
+            if (part.isEmpty()) {
+                return null;
+            }
+            Rectangle2D partBounds = part.getBounds2D();
+            clippedStart = (float) (horizontal ? partBounds.getMinX() : partBounds.getMinY());
+            clippedEnd = (float) (horizontal ? partBounds.getMaxX() : partBounds.getMaxY());
+        }
+        return new float[] {clippedStart, clippedEnd};
+    }
+
+    /**
+     * A subpath in render coordinates. Only its straight segments can become rulings,
+     * curves only extend its bounds.
+     */
+    private static class SubPath {
+        private final Point2D.Float start;
+        private final Point2D.Float current;
+        private final List<Line2D.Float> lines;
+        private final Rectangle2D.Float bounds;
+        private boolean closed;
+
+        private SubPath(Point2D.Float start) {
+            this.start = start;
+            this.current = new Point2D.Float(start.x, start.y);
+            this.lines = new ArrayList<>(4);
+            this.bounds = new Rectangle2D.Float(start.x, start.y, 0, 0);
+        }
+
+        private void lineTo(Point2D.Float point) {
+            lines.add(new Line2D.Float(current, point));
+            bounds.add(point);
+            current.setLocation(point);
+            closed = false;
+        }
+
+        private void curveTo(Point2D.Float control1, Point2D.Float control2, Point2D.Float point) {
+            bounds.add(control1);
+            bounds.add(control2);
+            bounds.add(point);
+            current.setLocation(point);
+            closed = false;
+        }
+
+        private void close() {
+            if (!closed && !current.equals(start)) {
+                lines.add(new Line2D.Float(current, start));
+            }
+            current.setLocation(start);
+            closed = true;
+        }
+    }
+}
@@ -2,73 +2,75 @@ package pdreaders;
 
 import model.Page;
 import model.Ruling;
-import org.apache.pdfbox.contentstream.PDContentStream;
-import org.apache.pdfbox.contentstream.operator.Operator;
 import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSStream;
-import org.apache.pdfbox.pdfparser.PDFStreamParser;
-import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDResources;
-import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
-import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
-import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
-import org.apache.pdfbox.pdmodel.graphics.pattern.PDTilingPattern;
 import org.apache.pdfbox.rendering.ImageType;
-import utils.Config;
 import utils.Utils;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.*;
 
 public class VisibleRulingExtractor {
 
-    private static final int GRAYSCALE_INTENSITY_THRESHOLD = 25;
-    private static final int VERTICAL_EDGE_HEIGHT_MINIMUM = 10;
-    private static final int HORIZONTAL_EDGE_WIDTH_MINIMUM = 50;
+    static final int GRAYSCALE_INTENSITY_THRESHOLD = 25;
+    static final int VERTICAL_EDGE_HEIGHT_MINIMUM = 10;
+    static final int HORIZONTAL_EDGE_WIDTH_MINIMUM = 50;
     private static final int EXPAND_AMOUNT = 1;
 
-    private final PDDocument pdDocument;
-    private final List<Ruling> visibleRulings;
+    private static final Comparator<Ruling> HORIZONTAL_SCAN_ORDER =
+            Comparator.comparingDouble((Ruling ruling) -> ruling.x1).thenComparingDouble(ruling -> ruling.y1);
 
-    private void release() {
-        visibleRulings.clear();
-    }
+    private final PDDocument pdDocument;
+    private final PageRenderer renderer;
+    // Scan buffers reused between pages
+    private byte[] pixels = new byte[0];
+    private int[] checkedUntil = new int[0];
 
     public VisibleRulingExtractor(PDDocument pdDocument) {
         this.pdDocument = pdDocument;
-        visibleRulings = new ArrayList<>(200);
+        this.renderer = new PageRenderer.Builder(pdDocument)
+                .setDpi(144)
+                .setImageType(ImageType.GRAY)
+                .setGraphicsOnly(true)
+                .createPageRenderer();
     }
 
     public void process(Page page) throws IOException {
 
-        release();
-
         BufferedImage image;
-        PDPage pdPage = page.getPDPage();
-
-        List<Object> newTokens = createTokensWithoutText(pdPage);
-        PDStream newContents = new PDStream(pdDocument);
-        writeTokensToStream(newContents, newTokens);
-        pdPage.setContents(newContents);
-        PDResources resources = pdPage.getResources();
-        if (resources != null) {
-            processResources(resources);
-            //removeAllImages(resources);
+        try {
+            image = renderer.render(page.getIndex());
+        } catch (IOException e) {
+            image = null;
+        }
+        List<Ruling> horizontalRulings;
+        List<Ruling> verticalRulings;
+        try {
+            horizontalRulings = getHorizontalRulings(image);
+            verticalRulings = getVerticalRulings(image);
+        } finally {
+            renderer.release(image);
         }
-        image = Utils.convertPageToImage(pdPage, 144, ImageType.GRAY);
-        List<Ruling> horizontalRulings = getHorizontalRulings(image);
-        List<Ruling> verticalRulings = getVerticalRulings(image);
 
+        addVisibleRulings(page, horizontalRulings, verticalRulings);
+    }
+
+    /**
+     * Snaps, straightens and collapses rulings given in 144 DPI render coordinates, scales them to page points
+     * and adds them to the page. The raster and the vector ruling detection share this step.
+     */
+    static void addVisibleRulings(Page page, List<Ruling> horizontalRulings, List<Ruling> verticalRulings) {
         List<Ruling> allEdges = new ArrayList<>(horizontalRulings);
         allEdges.addAll(verticalRulings);
 
@@ -89,7 +91,7 @@ public class VisibleRulingExtractor {
             horizontalRulings = Utils.collapseOrientedRulings(horizontalRulings, 5);
             verticalRulings = Utils.collapseOrientedRulings(verticalRulings, 5);
 
-            visibleRulings.clear();
+            List<Ruling> visibleRulings = new ArrayList<>(200);
             if (horizontalRulings != null) {
                 for (Ruling ruling: horizontalRulings) {
                     float x1 = ruling.x1 / 2;
@@ -110,7 +112,7 @@ public class VisibleRulingExtractor {
                 }
                 visibleRulings.addAll(verticalRulings);
             }
-            Rectangle2D rec = Config.bboxes.get(page.getIndex());
+            Rectangle2D rec = page.getConfig().getBBoxes().get(page.getIndex());
             if (rec != null) {
                 for (Ruling r: visibleRulings){
                     if (rec.contains(r.getBounds())) {
@@ -154,65 +156,37 @@ public class VisibleRulingExtractor {
         }
     }
 
-    private static void processResources(PDResources resources) throws IOException {
-        for (COSName name : resources.getXObjectNames()) {
-            PDXObject xObject = resources.getXObject(name);
-            if (xObject != null && xObject instanceof PDFormXObject) {
-                PDFormXObject formXObject = (PDFormXObject) xObject;
-                writeTokensToStream(formXObject.getContentStream(),
-                        createTokensWithoutText(formXObject));
-                if (formXObject.getResources() != null
-                        && formXObject.getResources() != resources
-                        && formXObject.getResources().getCOSObject() != resources.getCOSObject()) {
-                    processResources(formXObject.getResources());
-                }
-            }
-        }
-        for (COSName name : resources.getPatternNames()) {
-            PDAbstractPattern pattern = resources.getPattern(name);
-            if (pattern != null && pattern instanceof PDTilingPattern) {
-                PDTilingPattern tilingPattern = (PDTilingPattern) pattern;
-                writeTokensToStream(tilingPattern.getContentStream(),
-                        createTokensWithoutText(tilingPattern));
-                processResources(tilingPattern.getResources());
-            }
-        }
-    }
+    /**
+     * Returns the gray levels of the image row by row. A rendered TYPE_BYTE_GRAY image is read in place,
+     * other images are copied from their first band into a buffer reused between pages.
+     */
+    private byte[] getGrayPixels(BufferedImage image) {
+        Raster r = image.getRaster();
+        int width = r.getWidth();
+        int height = r.getHeight();
 
-    private static void writeTokensToStream(PDStream newContents, List<Object> newTokens) throws IOException {
-        if (newContents != null) {
-            try (OutputStream out = newContents.createOutputStream(COSName.FLATE_DECODE)) {
-                ContentStreamWriter writer = new ContentStreamWriter(out);
-                writer.writeTokens(newTokens);
-                out.close();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && r.getDataBuffer() instanceof DataBufferByte
+                && r.getSampleModel() instanceof ComponentSampleModel) {
+            DataBufferByte buffer = (DataBufferByte) r.getDataBuffer();
+            ComponentSampleModel sampleModel = (ComponentSampleModel) r.getSampleModel();
+            if (buffer.getNumBanks() == 1 && buffer.getOffset() == 0 && sampleModel.getPixelStride() == 1
+                    && sampleModel.getScanlineStride() == width && sampleModel.getBandOffsets()[0] == 0
+                    && r.getSampleModelTranslateX() == 0 && r.getSampleModelTranslateY() == 0) {
+                return buffer.getData();
             }
         }
-    }
 
-    private static List<Object> createTokensWithoutText(PDContentStream contentStream) throws IOException {
-
-        PDFStreamParser parser = new PDFStreamParser(contentStream);
-        Object token = parser.parseNextToken();
-        List<Object> newTokens = new ArrayList<>();
-
-        while (token != null) {
-            if (token instanceof Operator) {
-                Operator operation = (Operator) token;
-                if ("TJ".equals(operation.getName())
-                        || "Tj".equals(operation.getName())
-                        || "'".equals(operation.getName())
-                        || "\"".equals(operation.getName())
-                        || "Do".equals(operation.getName()))
-                {
-                    newTokens.remove(newTokens.size() - 1);
-                    token = parser.parseNextToken();
-                    continue;
-                }
+        if (pixels.length < width * height) {
+            pixels = new byte[width * height];
+        }
+        int[] samples = new int[width];
+        for (int y = 0; y < height; y++) {
+            r.getSamples(0, y, width, 1, 0, samples);
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = (byte) samples[x];
             }
-            newTokens.add(token);
-            token = parser.parseNextToken();
         }
-        return newTokens;
+        return pixels;
     }
 
     public List<Ruling> getHorizontalRulings(BufferedImage image) throws IOException {
@@ -220,46 +194,37 @@ public class VisibleRulingExtractor {
         ArrayList<Ruling> horizontalRulings = new ArrayList<>();
 
         if (image == null) {
-            return new ArrayList<>();
+            return horizontalRulings;
         }
 
-        Raster r = image.getRaster();
-
-        int width = r.getWidth();
-        int height = r.getHeight();
-
-        for (int x = 0; x < width; x++) {
+        byte[] data = getGrayPixels(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
 
-            int[] lastPixel = r.getPixel(x, 0, (int[]) null);
+        // An edge pixel is compared with the pixel above it, so every row is scanned on its own
+        for (int y = 1; y < height - 1; y++) {
+            int row = y * width;
+            int aboveRow = row - width;
+            int checkedUntil = -1; // The end of the last ruling found in the row
 
-            for (int y = 1; y < height - 1; y++) {
+            for (int x = 0; x < width; x++) {
 
-                int[] currPixel = r.getPixel(x, y, (int[]) null);
+                int currPixel = data[row + x] & 0xff;
 
-                int diff = Math.abs(currPixel[0] - lastPixel[0]);
+                int diff = Math.abs(currPixel - (data[aboveRow + x] & 0xff));
                 if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
-                    boolean alreadyChecked = false;
-                    for (Ruling line : horizontalRulings) {
-                        if (y == line.getP1().getY()
-                                && x >= line.getP1().getX()
-                                && x <= line.getP2().getX()) {
-                            alreadyChecked = true;
-                            break;
-                        }
-                    }
-
-                    if (alreadyChecked) {
-                        lastPixel = currPixel;
+                    if (x <= checkedUntil) {
                         continue;
                     }
+
                     int lineX = x + 1;
 
                     while (lineX < width) {
-                        int[] linePixel = r.getPixel(lineX, y, (int[]) null);
-                        int[] abovePixel = r.getPixel(lineX, y - 1, (int[]) null);
+                        int linePixel = data[row + lineX] & 0xff;
+                        int abovePixel = data[aboveRow + lineX] & 0xff;
 
-                        if (Math.abs(linePixel[0] - abovePixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
-                                || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
+                        if (Math.abs(linePixel - abovePixel) <= GRAYSCALE_INTENSITY_THRESHOLD
+                                || Math.abs(currPixel - linePixel) > GRAYSCALE_INTENSITY_THRESHOLD) {
                             break;
                         }
                         lineX++;
@@ -268,57 +233,56 @@ public class VisibleRulingExtractor {
                     int lineWidth = endX - x;
                     if (lineWidth > HORIZONTAL_EDGE_WIDTH_MINIMUM) {
                         horizontalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(endX, y)));
+                        checkedUntil = endX;
                     }
                 }
-                lastPixel = currPixel;
             }
         }
+
+        // Keep the column by column order the rulings are snapped in
+        horizontalRulings.sort(HORIZONTAL_SCAN_ORDER);
         return horizontalRulings;
     }
+
     public List<Ruling> getVerticalRulings(BufferedImage image) {
         ArrayList<Ruling> verticalRulings = new ArrayList<>();
 
         if (image == null) {
-            return new ArrayList<>();
+            return verticalRulings;
         }
 
-        Raster r = image.getRaster();
-        int width = r.getWidth();
-        int height = r.getHeight();
+        byte[] data = getGrayPixels(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
 
-        for (int y = 0; y < height; y++) {
+        // The end of the last ruling found in every column
+        if (checkedUntil.length < width) {
+            checkedUntil = new int[width];
+        }
+        Arrays.fill(checkedUntil, 0, width, -1);
 
-            int[] lastPixel = r.getPixel(0, y, (int[]) null);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
 
             for (int x = 1; x < width - 1; x++) {
 
-                int[] currPixel = r.getPixel(x, y, (int[]) null);
+                int currPixel = data[row + x] & 0xff;
 
-                int diff = Math.abs(currPixel[0] - lastPixel[0]);
+                int diff = Math.abs(currPixel - (data[row + x - 1] & 0xff));
                 if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
-                    boolean alreadyChecked = false;
-                    for (Ruling line : verticalRulings) {
-                        if (x == line.getP1().getX()
-                                && y >= line.getP1().getY()
-                                && y <= line.getP2().getY()) {
-                            alreadyChecked = true;
-                            break;
-                        }
-                    }
-
-                    if (alreadyChecked) {
-                        lastPixel = currPixel;
+                    if (y <= checkedUntil[x]) {
                         continue;
                     }
 
                     int lineY = y + 1;
 
                     while (lineY < height) {
-                        int[] linePixel = r.getPixel(x, lineY, (int[]) null);
-                        int[] leftPixel = r.getPixel(x - 1, lineY, (int[]) null);
+                        int index = lineY * width + x;
+                        int linePixel = data[index] & 0xff;
+                        int leftPixel = data[index - 1] & 0xff;
 
-                        if (Math.abs(linePixel[0] - leftPixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
-                                || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
+                        if (Math.abs(linePixel - leftPixel) <= GRAYSCALE_INTENSITY_THRESHOLD
+                                || Math.abs(currPixel - linePixel) > GRAYSCALE_INTENSITY_THRESHOLD) {
                             break;
                         }
 
@@ -329,14 +293,12 @@ public class VisibleRulingExtractor {
                     int lineLength = endY - y;
                     if (lineLength > VERTICAL_EDGE_HEIGHT_MINIMUM) {
                         verticalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(x, endY)));
+                        checkedUntil[x] = endY;
                     }
                 }
-
-                lastPixel = currPixel;
             }
         }
 
         return verticalRulings;
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves extractions over HTTP from a JVM that stays warm between documents.
+ * <p>
+ * POST /extract extracts the PDF file given by the path parameter, or the PDF sent as the request body under
+ * the name parameter, and returns the JSON output. The start and end parameters select 1-based pages, all pages by default. At most
+ * threads documents are extracted at once and queueCapacity more wait; further requests get 503 at once, before
+ * their body is read.
+ * <p>
+ * GET /status returns the limits, the documents in progress and waiting, and the counts since the start.
+ */
+public class ExtractionServer {
+
+    public interface Extraction {
+        /**
+         * Writes the JSON output of the pages from startPage to endPage (0-based) of the file to the stream and
+         * returns the number of extracted pages. Files written while extracting go to the work directory, which
+         * is deleted once the response is sent.
+         */
+        int extract(Path file, Path workDir, int startPage, int endPage, OutputStream json) throws Exception;
+    }
+
+    private static final String JSON_TYPE = "application/json; charset=UTF-8";
+    private static final String TEXT_TYPE = "text/plain; charset=UTF-8";
+    private static final String DEFAULT_UPLOAD_NAME = "upload.pdf";
+
+    private final HttpServer httpServer;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService dispatcher;
+    // A permit for every document extracted or waiting, taken before the request body is read
+    private final Semaphore permits;
+    private final Extraction extraction;
+    private final Path workDir;
+    private final int queueCapacity;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Every request gets a directory of its own under the work directory for the uploaded PDF file and the
+     * files written while extracting it, which is deleted after the response.
+     */
+    public ExtractionServer(String host, int port, int threads, int queueCapacity, Path workDir,
+                            Extraction extraction) throws IOException {
+        if (threads <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException("The server needs at least one thread and a non-negative queue capacity");
+        }
+        this.extraction = extraction;
+        this.workDir = workDir;
+        this.queueCapacity = queueCapacity;
+
+        permits = new Semaphore(threads + queueCapacity);
+        // The permits bound the documents in the pool, so its queue needs no bound of its own
+        pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        // An exchange holding a permit waits on its thread for the pool, the extra thread answers the others
+        dispatcher = Executors.newFixedThreadPool(threads + queueCapacity + 1);
+
+        httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpServer.setExecutor(dispatcher);
+        httpServer.createContext("/extract", this::handleExtract);
+        httpServer.createContext("/status", this::handleStatus);
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        pool.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    private void handleExtract(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                send(exchange, 405, TEXT_TYPE, "Use POST");
+                return;
+            }
+
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            int startPage;
+            int endPage;
+            try {
+                startPage = parameters.containsKey("start") ? Integer.parseInt(parameters.get("start")) - 1 : 0;
+                endPage = parameters.containsKey("end") ? Integer.parseInt(parameters.get("end")) - 1 : Integer.MAX_VALUE;
+            } catch (NumberFormatException e) {
+                send(exchange, 400, TEXT_TYPE, "The start and end pages have to be numbers");
+                return;
+            }
+
+            if (!permits.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, TEXT_TYPE, "All extraction threads are busy and the queue is full");
+                return;
+            }
+            try {
+                Path requestDir = Files.createTempDirectory(workDir, "request");
+                try {
+                    Path file;
+                    if (parameters.containsKey("path")) {
+                        file = Paths.get(parameters.get("path"));
+                    } else {
+                        // The upload keeps the given name, which is the document name in the output
+                        file = requestDir.resolve(getUploadName(parameters.get("name")));
+                        try (InputStream body = exchange.getRequestBody()) {
+                            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                    extract(exchange, file, requestDir, startPage, endPage);
+                } finally {
+                    FileUtils.deleteQuietly(requestDir.toFile());
+                }
+            } finally {
+                permits.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the file name of the given name, or the default one when it names no file.
+     */
+    private static String getUploadName(String name) {
+        if (null == name) {
+            return DEFAULT_UPLOAD_NAME;
+        }
+        try {
+            Path fileName = Paths.get(name).getFileName();
+            String uploadName = null == fileName ? "" : fileName.toString();
+            if (!uploadName.isEmpty() && !".".equals(uploadName) && !"..".equals(uploadName)) {
+                return uploadName;
+            }
+        } catch (InvalidPathException ignored) {
+        }
+        return DEFAULT_UPLOAD_NAME;
+    }
+
+    private void extract(HttpExchange exchange, Path file, Path requestDir, int startPage, int endPage)
+            throws IOException {
+        Future<byte[]> result;
+        try {
+            result = pool.submit(() -> {
+                ByteArrayOutputStream json = new ByteArrayOutputStream();
+                extraction.extract(file, requestDir, startPage, endPage, json);
+                return json.toByteArray();
+            });
+        } catch (RejectedExecutionException e) {
+            failed.incrementAndGet();
+            send(exchange, 503, TEXT_TYPE, "The server is stopping");
+            return;
+        }
+
+        try {
+            byte[] json = result.get();
+            succeeded.incrementAndGet();
+            send(exchange, 200, JSON_TYPE, json);
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+            send(exchange, 503, TEXT_TYPE, "The server is stopping");
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            Throwable cause = e.getCause();
+            int status = cause instanceof FileNotFoundException ? 404 : 500;
+            send(exchange, status, TEXT_TYPE, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("threads", pool.getMaximumPoolSize());
+            status.put("queue_capacity", queueCapacity);
+            status.put("active", pool.getActiveCount());
+            status.put("queued", pool.getQueue().size());
+            status.put("succeeded", succeeded.get());
+            status.put("failed", failed.get());
+            status.put("rejected", rejected.get());
+            send(exchange, 200, JSON_TYPE, mapper.writeValueAsBytes(status));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (null == query || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair: query.split("&")) {
+            int i = pair.indexOf('=');
+            if (i > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"),
+                        URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        send(exchange, status, contentType, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Processes a batch of files, a bounded number of them at once, every file on its own thread. A file is
+ * written to a temporary output first, which replaces the output only when the file succeeds in time.
+ * A file running over the timeout is reported and interrupted, and its slot is given to the next file
+ * at once, so a file that does not stop does not hold up the batch. At most as many abandoned files as there
+ * are slots may go on running this way; beyond that a timed out file keeps its slot until its thread stops,
+ * so files that ignore the interrupt cannot pile up threads without bound.
+ */
+public final class BatchExecutor {
+
+    public interface Task {
+        /**
+         * Processes the file into the output and returns the number of processed pages.
+         */
+        int apply(Path file, Path output) throws Exception;
+    }
+
+    public enum Status {
+        SUCCEEDED, FAILED, TIMED_OUT
+    }
+
+    private static final int RUNNING = 0;
+    private static final int FINISHED = 1;
+    private static final int ABANDONED = 2;
+
+    private final int threads;
+    private final long timeoutMillis;
+    private final List<Result> results;
+
+    /**
+     * A non-positive number of threads means one per available processor, a non-positive timeout means none.
+     */
+    public BatchExecutor(int threads, long timeoutSeconds) {
+        this.threads = PageExecutor.resolveThreads(threads);
+        this.timeoutMillis = timeoutSeconds > 0 ? TimeUnit.SECONDS.toMillis(timeoutSeconds) : 0;
+        this.results = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /**
+     * Processes every file into the output returned for it, and returns the results in the order of the files.
+     */
+    public List<Result> run(List<Path> files, Function<Path, Path> outputs, Task task) throws IOException {
+        Semaphore slots = new Semaphore(threads);
+        // Abandoned files whose threads are still running
+        AtomicInteger abandoned = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(files.size());
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "batch-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                int index = i;
+                slots.acquire();
+                AtomicInteger state = new AtomicInteger(RUNNING);
+                AtomicBoolean slotHeld = new AtomicBoolean(true);
+                long start = System.nanoTime();
+
+                Thread worker = new Thread(() -> {
+                    Path output = outputs.apply(file);
+                    Path part = partOf(output);
+                    Result result;
+                    try {
+                        int pages = task.apply(file, part);
+                        result = new Result(index, file, Status.SUCCEEDED, pages, elapsed(start), null);
+                        if (state.compareAndSet(RUNNING, FINISHED)) {
+                            Files.move(part, output, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    } catch (Throwable e) {
+                        result = new Result(index, file, Status.FAILED, 0, elapsed(start), describe(e));
+                        state.compareAndSet(RUNNING, FINISHED);
+                    }
+                    if (state.get() == FINISHED) {
+                        results.add(result);
+                        releaseSlot(slots, slotHeld);
+                        done.countDown();
+                    } else {
+                        abandoned.decrementAndGet();
+                        releaseSlot(slots, slotHeld);
+                    }
+                    // A failed or abandoned file leaves no output behind
+                    if (result.getStatus() != Status.SUCCEEDED || state.get() == ABANDONED) {
+                        deleteQuietly(part);
+                    }
+                }, "batch-" + file.getFileName());
+                worker.setDaemon(true);
+                worker.start();
+
+                if (timeoutMillis > 0) {
+                    watchdog.schedule(() -> {
+                        if (state.compareAndSet(RUNNING, ABANDONED)) {
+                            results.add(new Result(index, file, Status.TIMED_OUT, 0, elapsed(start),
+                                    "no result after " + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis) + " s"));
+                            worker.interrupt();
+                            // Past the limit the slot is released by the thread when it stops
+                            if (abandoned.incrementAndGet() <= threads) {
+                                releaseSlot(slots, slotHeld);
+                            }
+                            done.countDown();
+                        }
+                    }, timeoutMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch processing was interrupted");
+        } finally {
+            watchdog.shutdownNow();
+        }
+
+        // An abandoned file may still be running, its partial output is not left to it
+        for (Result result: results) {
+            if (result.getStatus() == Status.TIMED_OUT) {
+                deleteQuietly(partOf(outputs.apply(result.getFile())));
+            }
+        }
+
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingInt(r -> r.index));
+        return sorted;
+    }
+
+    private static void releaseSlot(Semaphore slots, AtomicBoolean slotHeld) {
+        if (slotHeld.compareAndSet(true, false)) {
+            slots.release();
+        }
+    }
+
+    private static Path partOf(Path output) {
+        return output.resolveSibling(output.getFileName() + ".part");
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static String describe(Throwable e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Prints the throughput of the batch and every file that did not succeed.
+     */
+    public static void printSummary(List<Result> results, long elapsedMillis, PrintStream out) {
+        int succeeded = 0;
+        int failed = 0;
+        int timedOut = 0;
+        long pages = 0;
+        for (Result result: results) {
+            switch (result.getStatus()) {
+                case SUCCEEDED:
+                    succeeded++;
+                    pages += result.getPages();
+                    break;
+                case FAILED:
+                    failed++;
+                    break;
+                default:
+                    timedOut++;
+                    break;
+            }
+        }
+
+        double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+        out.printf("Processed %d files in %.1f s (%.2f files/s, %.1f pages/s): %d succeeded, %d failed, %d timed out%n",
+                results.size(), seconds, results.size() / seconds, pages / seconds, succeeded, failed, timedOut);
+        for (Result result: results) {
+            if (result.getStatus() != Status.SUCCEEDED) {
+                out.printf("%s %s after %.1f s: %s%n", result.getStatus(), result.getFile(),
+                        result.getMillis() / 1000.0, result.getMessage());
+            }
+        }
+    }
+
+    public static class Result {
+        // Position of the file in the batch
+        private final int index;
+        private final Path file;
+        private final Status status;
+        private final int pages;
+        private final long millis;
+        private final String message;
+
+        private Result(int index, Path file, Status status, int pages, long millis, String message) {
+            this.index = index;
+            this.file = file;
+            this.status = status;
+            this.pages = pages;
+            this.millis = millis;
+            this.message = message;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -1,45 +1,218 @@
 package utils;
+import pdreaders.RulingMode;
+import pdreaders.TextDetail;
+
 import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Settings of an extraction. A config does not change once created, so documents extracted with different
+ * settings can share a process; a changed copy is made by a builder started from the config.
+ */
 public class Config {
 
-    public static boolean removeFrame = false;
-    public static String tmpDir;
-    public static String pathToGOSTJson;
-    public static int left = 0;
-    public static int top = 0;
-    public static int width = 0;
-    public static int height = 0;
-    public static Map<Integer, Rectangle2D> bboxes = new HashMap<>();
+    private boolean removeFrame;
+    private String tmpDir;
+    private String pathToGOSTJson;
+    private Map<Integer, Rectangle2D> bboxes;
+    // Number of page worker threads, a non-positive value means one per available processor
+    private int threads;
+    // How visible rulings are detected, see RulingMode
+    private RulingMode rulingMode;
+    // Writes the JSON output without indentation
+    private boolean compactJson;
+    // Maximum number of pages in progress when the pages are streamed
+    private int pageWindow;
+    // Fraction of the maximum heap above which no further page is started while earlier ones can be written
+    private double heapCeiling;
+    // Reads the PDF files through memory-mapped files instead of buffered ones
+    private boolean memoryMapped;
+    // Megabytes of decoded PDF streams kept on the heap per document before scratch files are used, negative - no limit
+    private long maxMainMemoryMB;
+    // Text granularities kept by the content extractor besides the words and lines
+    private Set<TextDetail> textDetails;
+
+    private Config() {}
 
-    public Config(){
+    public boolean isRemoveFrame() {
+        return removeFrame;
     }
 
-    public void setLeft(int left){
-        if (left > 0) {
-            Config.left = left;
-        }
+    public String getTmpDir() {
+        return tmpDir;
     }
 
-    public void setTop(int top){
-        if (top > 0) {
-            Config.top = top;
-        }
+    public String getPathToGOSTJson() {
+        return pathToGOSTJson;
     }
 
-    public void setWidth(int width){
-        if (width > 0) {
-            Config.width = width;
-        }
+    /**
+     * Returns the GOST frame boxes of the pages by page index.
+     */
+    public Map<Integer, Rectangle2D> getBBoxes() {
+        return bboxes;
     }
 
-    public void setHeight(int height){
-        if (height > 0) {
-            Config.height = height;
-        }
+    public int getThreads() {
+        return threads;
+    }
+
+    public RulingMode getRulingMode() {
+        return rulingMode;
+    }
+
+    public boolean isCompactJson() {
+        return compactJson;
+    }
+
+    public int getPageWindow() {
+        return pageWindow;
+    }
+
+    public double getHeapCeiling() {
+        return heapCeiling;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public long getMaxMainMemoryMB() {
+        return maxMainMemoryMB;
+    }
+
+    public Set<TextDetail> getTextDetails() {
+        return textDetails;
     }
 
+    public static class Builder {
+        private boolean removeFrame;
+        private String tmpDir;
+        private String pathToGOSTJson;
+        private Map<Integer, Rectangle2D> bboxes;
+        private int threads;
+        private RulingMode rulingMode;
+        private boolean compactJson;
+        private int pageWindow;
+        private double heapCeiling;
+        private boolean memoryMapped;
+        private long maxMainMemoryMB;
+        private Set<TextDetail> textDetails;
+
+        // Default settings
+        {
+            setRemoveFrame(false);
+            setBBoxes(Collections.emptyMap());
+            setThreads(1);
+            setRulingMode(RulingMode.RASTER);
+            setCompactJson(false);
+            setPageWindow(4);
+            setHeapCeiling(0.75);
+            setMemoryMapped(false);
+            setMaxMainMemoryMB(-1);
+            setTextDetails(Collections.emptySet());
+        }
+
+        public Builder() {
+        }
+
+        public Builder(Config config) {
+            setRemoveFrame(config.removeFrame);
+            setTmpDir(config.tmpDir);
+            setPathToGOSTJson(config.pathToGOSTJson);
+            setBBoxes(config.bboxes);
+            setThreads(config.threads);
+            setRulingMode(config.rulingMode);
+            setCompactJson(config.compactJson);
+            setPageWindow(config.pageWindow);
+            setHeapCeiling(config.heapCeiling);
+            setMemoryMapped(config.memoryMapped);
+            setMaxMainMemoryMB(config.maxMainMemoryMB);
+            setTextDetails(config.textDetails);
+        }
+
+        public Builder setRemoveFrame(boolean removeFrame) {
+            this.removeFrame = removeFrame;
+            return this;
+        }
+
+        public Builder setTmpDir(String tmpDir) {
+            this.tmpDir = tmpDir;
+            return this;
+        }
+
+        public Builder setPathToGOSTJson(String pathToGOSTJson) {
+            this.pathToGOSTJson = pathToGOSTJson;
+            return this;
+        }
+
+        public Builder setBBoxes(Map<Integer, Rectangle2D> bboxes) {
+            this.bboxes = bboxes;
+            return this;
+        }
+
+        public Builder setThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder setRulingMode(RulingMode rulingMode) {
+            this.rulingMode = rulingMode;
+            return this;
+        }
+
+        public Builder setCompactJson(boolean compactJson) {
+            this.compactJson = compactJson;
+            return this;
+        }
+
+        public Builder setPageWindow(int pageWindow) {
+            this.pageWindow = pageWindow;
+            return this;
+        }
+
+        public Builder setHeapCeiling(double heapCeiling) {
+            this.heapCeiling = heapCeiling;
+            return this;
+        }
+
+        public Builder setMemoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
 
+        public Builder setMaxMainMemoryMB(long maxMainMemoryMB) {
+            this.maxMainMemoryMB = maxMainMemoryMB;
+            return this;
+        }
+
+        public Builder setTextDetails(Set<TextDetail> textDetails) {
+            this.textDetails = textDetails;
+            return this;
+        }
+
+        public Config createConfig() {
+            Config config = new Config();
+            config.removeFrame = this.removeFrame;
+            config.tmpDir = this.tmpDir;
+            config.pathToGOSTJson = this.pathToGOSTJson;
+            // The boxes are copied, so a changed map does not change the config
+            config.bboxes = Collections.unmodifiableMap(new HashMap<>(this.bboxes));
+            config.threads = this.threads;
+            config.rulingMode = this.rulingMode;
+            config.compactJson = this.compactJson;
+            config.pageWindow = this.pageWindow;
+            config.heapCeiling = this.heapCeiling;
+            config.memoryMapped = this.memoryMapped;
+            config.maxMainMemoryMB = this.maxMainMemoryMB;
+            Set<TextDetail> textDetails = EnumSet.noneOf(TextDetail.class);
+            textDetails.addAll(this.textDetails);
+            config.textDetails = Collections.unmodifiableSet(textDetails);
+            return config;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a task over a list of pages on a worker pool. Results are returned in the order of the input list,
+ * whatever order the workers finish in.
+ */
+public final class PageExecutor {
+
+    public interface Task<I, O> {
+        O apply(I item) throws IOException;
+    }
+
+    public interface Sink<O> {
+        void accept(O result) throws IOException;
+    }
+
+    private PageExecutor() {
+    }
+
+    public static int resolveThreads(int threads) {
+        return threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    /**
+     * Returns a pool of the given number of daemon threads for invokeAll and stream. The pool is shared by the
+     * page steps of a document and shut down by its owner.
+     */
+    public static ExecutorService newPool(int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "page-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs the task over the items on the executor, or on the calling thread when the executor is null.
+     */
+    public static <I, O> List<O> invokeAll(List<I> items, ExecutorService executor, Task<I, O> task) throws IOException {
+        List<O> result = new ArrayList<>(items.size());
+
+        if (null == executor || items.size() <= 1) {
+            for (I item: items) {
+                result.add(task.apply(item));
+            }
+            return result;
+        }
+
+        List<Future<O>> futures = new ArrayList<>(items.size());
+        try {
+            for (I item: items) {
+                futures.add(executor.submit(() -> task.apply(item)));
+            }
+            for (Future<O> future: futures) {
+                result.add(get(future));
+            }
+            return result;
+        } finally {
+            cancel(futures);
+        }
+    }
+
+    /**
+     * Runs the task over the items like invokeAll, but hands every result to the sink as soon as the results
+     * before it are done, instead of collecting them. No more than window items are in progress, and while the
+     * used heap is above heapCeiling (a fraction of the maximum heap) the earlier results are drained before
+     * a next item is started, so the results waiting for the sink stay within a fixed amount of memory.
+     */
+    public static <I, O> void stream(List<I> items, ExecutorService executor, int window, double heapCeiling,
+                                     Task<I, O> task, Sink<O> sink) throws IOException {
+        if (null == executor || items.size() <= 1) {
+            for (I item: items) {
+                sink.accept(task.apply(item));
+            }
+            return;
+        }
+
+        Deque<Future<O>> inProgress = new ArrayDeque<>(Math.max(window, 1));
+        try {
+            for (I item: items) {
+                while (inProgress.size() >= window || (!inProgress.isEmpty() && isHeapAbove(heapCeiling))) {
+                    sink.accept(get(inProgress.poll()));
+                }
+                inProgress.add(executor.submit(() -> task.apply(item)));
+            }
+            while (!inProgress.isEmpty()) {
+                sink.accept(get(inProgress.poll()));
+            }
+        } finally {
+            cancel(inProgress);
+        }
+    }
+
+    /**
+     * Cancels the tasks left after a failure, the pool stays usable for the next step.
+     */
+    private static <O> void cancel(Collection<Future<O>> futures) {
+        for (Future<O> future: futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static boolean isHeapAbove(double ceiling) {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > ceiling * runtime.maxMemory();
+    }
+
+    private static <O> O get(Future<O> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Page processing was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package utils;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads PDF files as set in the config: the file is read through a memory-mapped or a buffered file, and the
+ * decoded streams are kept on the heap up to the main memory limit and in scratch files under the temporary
+ * directory beyond it.
+ */
+public final class PdfLoader {
+
+    public static final String SCRATCH_DIRECTORY_NAME = "scratch";
+
+    // A file is mapped into a single buffer, so larger files are read through a buffered file
+    private static final long MAX_MAPPED_LENGTH = Integer.MAX_VALUE;
+
+    private PdfLoader() {
+    }
+
+    public static PDDocument load(File file, Config config) throws IOException {
+        RandomAccessRead source = open(file, config);
+        try {
+            // The document closes its source
+            return Loader.loadPDF(source, "", null, null, getMemoryUsageSetting(config));
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    private static RandomAccessRead open(File file, Config config) throws IOException {
+        if (config.isMemoryMapped() && file.length() <= MAX_MAPPED_LENGTH) {
+            return new RandomAccessReadMemoryMappedFile(file);
+        }
+        return new RandomAccessReadBufferedFile(file);
+    }
+
+    public static MemoryUsageSetting getMemoryUsageSetting(Config config) {
+        if (config.getMaxMainMemoryMB() < 0) {
+            return MemoryUsageSetting.setupMainMemoryOnly();
+        }
+
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(config.getMaxMainMemoryMB() * 1024 * 1024);
+        File scratchDir = getScratchDir(config.getTmpDir());
+        if (null != scratchDir) {
+            setting.setTempDir(scratchDir);
+        }
+        return setting;
+    }
+
+    /**
+     * Returns the scratch directory under the temporary directory, or null to use the system one.
+     */
+    private static File getScratchDir(String tmpDir) {
+        if (null == tmpDir || tmpDir.isEmpty()) {
+            return null;
+        }
+        File scratchDir = new File(tmpDir, SCRATCH_DIRECTORY_NAME);
+        scratchDir.mkdirs();
+        return scratchDir.isDirectory() ? scratchDir : null;
+    }
+}
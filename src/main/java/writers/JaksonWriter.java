@@ -1,43 +1,39 @@
 package writers;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import model.*;
 import model.table.Cell;
 import model.table.Row;
 import model.table.Table;
 import org.apache.commons.io.FilenameUtils;
-import utils.Config;
 
 import javax.imageio.ImageIO;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.List;
 
-public class JaksonWriter {
+public class JaksonWriter implements Closeable {
 
     private final Document document;
-    ObjectMapper jakson;
-    ObjectNode root;
+    private final JsonFactory factory;
+    private JsonGenerator generator;
     int startPage = 0;
     int endPage = 0;
     boolean partialExtraction;
-    ObjectWriter writer;;
 
     public JaksonWriter(Document document){
         this.document = document;
         this.partialExtraction = false;
-        this.jakson = new ObjectMapper();
-        this.root = this.jakson.createObjectNode();
-        this.root.put("document", this.document.getSourceFile().getName());
-        this.writer = this.jakson.writer(new DefaultPrettyPrinter());
+        this.factory = new JsonFactory();
     }
 
     public JaksonWriter(Document document, int startPage, int endPage){
@@ -45,172 +41,234 @@ public class JaksonWriter {
         this.startPage = startPage;
         this.endPage = endPage;
         this.partialExtraction = true;
-        this.jakson = new ObjectMapper();
-        this.root = this.jakson.createObjectNode();
-        this.root.put("document", this.document.getSourceFile().getName());
-        this.writer = this.jakson.writer(new DefaultPrettyPrinter());
+        this.factory = new JsonFactory();
     }
 
     public void write() throws IOException {
-        ArrayNode jsonPages = this.jakson.createArrayNode();
-        if (partialExtraction) {
-            for (int i = startPage; i <= endPage; i++) {
-                Page page = document.getPage(i);
-                jsonPages.add(writeJaksonPage(page));
+        write(new File(document.getConfig().getTmpDir() + "data.json"));
+    }
+
+    public void write(File out) throws IOException {
+        open(out);
+        writePages();
+    }
+
+    /**
+     * Writes the document to the stream, which is closed afterwards. When writing fails the document is left
+     * unfinished, so a partial output is not valid JSON.
+     */
+    public void write(OutputStream out) throws IOException {
+        open(out);
+        writePages();
+    }
+
+    private void writePages() throws IOException {
+        try {
+            if (partialExtraction) {
+                for (int i = startPage; i <= endPage; i++) {
+                    writePage(document.getPage(i));
+                }
+            } else {
+                for (Iterator<Page> it = this.document.getPagesItrerator(); it.hasNext(); ) {
+                    writePage(it.next());
+                }
             }
-        } else {
-            for (Iterator<Page> it = this.document.getPagesItrerator(); it.hasNext(); ) {
-                Page page = it.next();
-                jsonPages.add(writeJaksonPage(page));
+            finish();
+        } finally {
+            close();
+        }
+    }
+
+    public void open() throws IOException {
+        open(new File(document.getConfig().getTmpDir() + "data.json"));
+    }
+
+    /**
+     * Starts the document in the file. Pages are streamed to the file by writePage, so only the page being
+     * written is held in memory, and the document is finished by finish.
+     */
+    public void open(File out) throws IOException {
+        open(factory.createGenerator(out, JsonEncoding.UTF8));
+    }
+
+    public void open(OutputStream out) throws IOException {
+        open(factory.createGenerator(out, JsonEncoding.UTF8));
+    }
+
+    private void open(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        if (!document.getConfig().isCompactJson()) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+        }
+        generator.writeStartObject();
+        generator.writeStringField("document", this.document.getSourceFile().getName());
+        generator.writeArrayFieldStart("pages");
+    }
+
+    /**
+     * Ends the pages array and the document and closes the output.
+     */
+    public void finish() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        close();
+    }
+
+    /**
+     * Closes the output. A document that was not finished is left as it is instead of being ended, so a failed
+     * extraction does not look like a complete one.
+     */
+    @Override
+    public void close() throws IOException {
+        if (null != generator) {
+            try {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                generator.close();
+            } finally {
+                generator = null;
             }
         }
-        this.root.put("pages", jsonPages);
-        File out = new File(Config.tmpDir + "data.json");
-        this.writer.writeValue(out, this.root);
     }
 
-    private ObjectNode writeJaksonPage(Page page) {
+    public void writePage(Page page) throws IOException {
         //page.sortLines();
-        ObjectNode jsonPage = this.jakson.createObjectNode();
-        ArrayNode jsonBlocks = this.jakson.createArrayNode();
-        ArrayNode jsonTables = this.jakson.createArrayNode();
-        ArrayNode jsonImages = this.jakson.createArrayNode();
-        jsonPage.put("number", page.getIndex());
-        jsonPage.put("width", page.getWidth());
-        jsonPage.put("height", page.getHeight());
+        JsonGenerator json = this.generator;
+        json.writeStartObject();
+        json.writeNumberField("number", page.getIndex());
+        json.writeNumberField("width", page.getWidth());
+        json.writeNumberField("height", page.getHeight());
         TextChunk prev_line = null;
         if (!page.getTextLines().isEmpty()) {
             prev_line = page.getTextLines().get(0);
         }
         List<TextChunk> outsideTextLine = page.getOutsideTextLines();
+        json.writeArrayFieldStart("blocks");
         for (TextChunk block: outsideTextLine) {
-            ObjectNode jsonBlock =this.jakson.createObjectNode();
-            ArrayNode jsonAnnotations = this.jakson.createArrayNode();
-            jsonBlock.put("order", 10000 * (page.getIndex()+1) + block.getId());
-            jsonBlock.put("x_top_left", (int)block.getLeft());
-            jsonBlock.put("y_top_left", (int)block.getTop());
-            jsonBlock.put("width", (int)block.getWidth());
+            json.writeStartObject();
+            json.writeNumberField("order", 10000 * (page.getIndex()+1) + block.getId());
+            json.writeNumberField("x_top_left", (int)block.getLeft());
+            json.writeNumberField("y_top_left", (int)block.getTop());
+            json.writeNumberField("width", (int)block.getWidth());
             int height = (int)block.getHeight() < 0 ? 0: (int)block.getHeight();
-            jsonBlock.put("height", height);
-            jsonBlock.put("text", block.getText());
-            jsonBlock.put("start", 0);
-            jsonBlock.put("end", block.getText().length() - 1);
+            json.writeNumberField("height", height);
+            json.writeStringField("text", block.getText());
+            json.writeNumberField("start", 0);
+            json.writeNumberField("end", block.getText().length() - 1);
             if (!block.getMetadata().equals("")) {
-                jsonBlock.put("metadata", block.getMetadata());
+                json.writeStringField("metadata", block.getMetadata());
             } else {
-                jsonBlock.put("metadata", "unknown");
+                json.writeStringField("metadata", "unknown");
             }
-            jsonBlock.put("indent", (int) block.getLeft());
+            json.writeNumberField("indent", (int) block.getLeft());
             int spacing = (int) (block.getTop() - prev_line.getBottom());
             if (spacing < 0) spacing = 0;
-            jsonBlock.put("spacing", spacing);
+            json.writeNumberField("spacing", spacing);
             prev_line = block;
             int start = 0;
+            json.writeArrayFieldStart("annotations");
             for (TextChunk.TextLine chunk: block.getWords()){
-                ObjectNode annotation = this.jakson.createObjectNode();
+                json.writeStartObject();
                 if (!chunk.getMetadata().equals("")) {
-                    annotation.put("metadata", chunk.getMetadata());
+                    json.writeStringField("metadata", chunk.getMetadata());
                 } else {
-                    annotation.put("metadata", "unknown");
+                    json.writeStringField("metadata", "unknown");
                 }
-                annotation.put("url", chunk.getUrl());
-                annotation.put("text", chunk.getText());
-                annotation.put("is_bold", chunk.getFont().isBold());
-                annotation.put("is_italic", chunk.getFont().isItalic());
-                annotation.put("is_normal", chunk.getFont().isNormal());
-                annotation.put("font_name", chunk.getFont().getName());
-                annotation.put("font_size", (int)chunk.getFont().getFontSize());
-                annotation.put("x_top_left", (int)chunk.getBbox().getLeft());
-                annotation.put("y_top_left", (int)chunk.getBbox().getTop());
-                annotation.put("width", (int)chunk.getBbox().getWidth());
-                annotation.put("height", (int)chunk.getBbox().getHeight());
-                annotation.put("start", start);
+                json.writeStringField("url", chunk.getUrl());
+                json.writeStringField("text", chunk.getText());
+                json.writeBooleanField("is_bold", chunk.getFont().isBold());
+                json.writeBooleanField("is_italic", chunk.getFont().isItalic());
+                json.writeBooleanField("is_normal", chunk.getFont().isNormal());
+                json.writeStringField("font_name", chunk.getFont().getName());
+                json.writeNumberField("font_size", (int)chunk.getFont().getFontSize());
+                json.writeNumberField("x_top_left", (int)chunk.getLeft());
+                json.writeNumberField("y_top_left", (int)chunk.getTop());
+                json.writeNumberField("width", (int)chunk.getWidth());
+                json.writeNumberField("height", (int)chunk.getHeight());
+                json.writeNumberField("start", start);
                 int len = chunk.getText().length();
-                annotation.put("end", start + len);
+                json.writeNumberField("end", start + len);
                 start = start + len + 1;
-                jsonAnnotations.add(annotation);
+                json.writeEndObject();
             }
-            jsonBlock.put("annotations", jsonAnnotations);
-            jsonBlocks.add(jsonBlock);
+            json.writeEndArray();
+            json.writeEndObject();
         }
-        jsonPage.put("blocks",jsonBlocks);
+        json.writeEndArray();
+        json.writeArrayFieldStart("tables");
         for (Table table: page.getTables()) {
-            ObjectNode jsonTable = this.jakson.createObjectNode();
-            jsonTable.put("x_top_left", (int)table.getLeft());
-            jsonTable.put("y_top_left", (int)table.getTop());
-            jsonTable.put("width", (int)table.getWidth());
-            jsonTable.put("height", (int)table.getHeight());
-            jsonTable.put("order", 10000 * (page.getIndex()+1) + table.getOrder());
-            ArrayNode cellProperties = this.jakson.createArrayNode();
-            ArrayNode jsonRows = this.jakson.createArrayNode();
+            json.writeStartObject();
+            json.writeNumberField("x_top_left", (int)table.getLeft());
+            json.writeNumberField("y_top_left", (int)table.getTop());
+            json.writeNumberField("width", (int)table.getWidth());
+            json.writeNumberField("height", (int)table.getHeight());
+            json.writeNumberField("order", 10000 * (page.getIndex()+1) + table.getOrder());
+            json.writeArrayFieldStart("rows");
             for (int i = 0; i < table.getNumOfRows(); i++) {
-                ArrayNode jsonRow = this.jakson.createArrayNode();
-                ArrayNode jsonPropertiesRow = this.jakson.createArrayNode();
                 Row row = table.getRow(i);
+                if (row.getCells().isEmpty()) continue;
+                json.writeStartArray();
                 for (Cell cell: row.getCells()){
-                    ObjectNode cellText = this.jakson.createObjectNode();
-                    cellText.put("text", cell.getText());
-                    ArrayNode cellBlocks = this.jakson.createArrayNode();
+                    json.writeStartObject();
+                    json.writeStringField("text", cell.getText());
+                    json.writeArrayFieldStart("cell_blocks");
                     int start = 0;
-                    for(TextChunk tb: page.getTextLines()) {
-                        for (TextChunk.TextLine tl: tb.getWords()){
-                            if (cell.intersects(tl.getBbox())){
-                                ObjectNode cellBlock = this.jakson.createObjectNode();
-                                cellBlock.put("x_top_left", (int)tl.getBbox().getLeft());
-                                cellBlock.put("y_top_left", (int)tl.getBbox().getTop());
-                                cellBlock.put("width", (int)tl.getBbox().getWidth());
-                                cellBlock.put("height", (int)tl.getBbox().getHeight());
-                                cellBlock.put("start", start);
-                                int len = tl.getText().length();
-                                cellBlock.put("end", start + len);
-                                start = start + len + 1;
-                                cellBlocks.add(cellBlock);
-
-                            }
-                        }
+                    for (TextChunk.TextLine tl: cell.getTextLineWords()) {
+                        json.writeStartObject();
+                        json.writeNumberField("x_top_left", (int)tl.getLeft());
+                        json.writeNumberField("y_top_left", (int)tl.getTop());
+                        json.writeNumberField("width", (int)tl.getWidth());
+                        json.writeNumberField("height", (int)tl.getHeight());
+                        json.writeNumberField("start", start);
+                        int len = tl.getText().length();
+                        json.writeNumberField("end", start + len);
+                        start = start + len + 1;
+                        json.writeEndObject();
                     }
-
-                    cellText.put("cell_blocks", cellBlocks);
-                    jsonRow.add(cellText);
-                    ObjectNode jsonProp = this.jakson.createObjectNode();
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("cell_properties");
+            for (int i = 0; i < table.getNumOfRows(); i++) {
+                Row row = table.getRow(i);
+                if (row.getCells().isEmpty()) continue;
+                json.writeStartArray();
+                for (Cell cell: row.getCells()){
+                    json.writeStartObject();
                     int rowSpan = cell.getRb() - cell.getRt() + 1;
-                    jsonProp.put("row_span", rowSpan);
+                    json.writeNumberField("row_span", rowSpan);
                     int colSpan = cell.getCr() - cell.getCl() + 1;
-                    jsonProp.put("col_span", colSpan);
-                    jsonProp.put("x_top_left", cell.getLeft());
-                    jsonProp.put("y_top_left", cell.getTop());
-                    jsonProp.put("width", cell.getWidth());
-                    jsonProp.put("height", cell.getHeight());
-                    jsonProp.put("invisible", cell.getInvisiable());
-                    jsonPropertiesRow.add(jsonProp);
-                }
-                if (!row.getCells().isEmpty()) {
-                    jsonRows.add(jsonRow);
-                    cellProperties.add(jsonPropertiesRow);
+                    json.writeNumberField("col_span", colSpan);
+                    json.writeNumberField("x_top_left", cell.getLeft());
+                    json.writeNumberField("y_top_left", cell.getTop());
+                    json.writeNumberField("width", cell.getWidth());
+                    json.writeNumberField("height", cell.getHeight());
+                    json.writeNumberField("invisible", cell.getInvisiable());
+                    json.writeEndObject();
                 }
+                json.writeEndArray();
             }
-            jsonTable.put("rows", jsonRows);
-            jsonTable.put("cell_properties", cellProperties);
-            jsonTables.add(jsonTable);
-
+            json.writeEndArray();
+            json.writeEndObject();
         }
-
-        jsonPage.put("tables",jsonTables);
+        json.writeEndArray();
+        json.writeArrayFieldStart("images");
         for (PDFImage image: page.getImages()) {
-            ObjectNode jsonImage =  this.jakson.createObjectNode();
-            jsonImage.put("original_name", image.getFileName());
-            jsonImage.put("tmp_file_path", image.getPathOut());
-            jsonImage.put("uuid", image.getUuid());
-            jsonImage.put("x_top_left", image.getXPosition());
-            jsonImage.put("y_top_left", image.getYPosition());
-            jsonImage.put("width", image.getWidth());
-            jsonImage.put("height", image.getHeight());
-            jsonImage.put("page_num", image.getPageNumber());
-            jsonImages.add(jsonImage);
+            json.writeStartObject();
+            json.writeStringField("original_name", image.getFileName());
+            json.writeStringField("tmp_file_path", image.getPathOut());
+            json.writeStringField("uuid", image.getUuid());
+            json.writeNumberField("x_top_left", image.getXPosition());
+            json.writeNumberField("y_top_left", image.getYPosition());
+            json.writeNumberField("width", image.getWidth());
+            json.writeNumberField("height", image.getHeight());
+            json.writeNumberField("page_num", image.getPageNumber());
+            json.writeEndObject();
         }
-        jsonPage.put("images",jsonImages);
-
-        return jsonPage;
+        json.writeEndArray();
+        json.writeEndObject();
     }
 
 
@@ -101,10 +101,10 @@ public class JsonDocumentWriter {
                 annotation.put("is_normal", chunk.getFont().isNormal());
                 annotation.put("font_name", chunk.getFont().getName());
                 annotation.put("font_size", (int)chunk.getFont().getFontSize());
-                annotation.put("x_top_left", (int)chunk.getBbox().getLeft());
-                annotation.put("y_top_left", (int)chunk.getBbox().getTop());
-                annotation.put("width", (int)chunk.getBbox().getWidth());
-                annotation.put("height", (int)chunk.getBbox().getHeight());
+                annotation.put("x_top_left", (int)chunk.getLeft());
+                annotation.put("y_top_left", (int)chunk.getTop());
+                annotation.put("width", (int)chunk.getWidth());
+                annotation.put("height", (int)chunk.getHeight());
                 annotation.put("start", start);
                 int len = chunk.getText().length();
                 annotation.put("end", start + len);
@@ -133,22 +133,17 @@ public class JsonDocumentWriter {
                     cellText.put("text", cell.getText());
                     JSONArray cellBlocks = new JSONArray();
                     int start = 0;
-                    for(TextChunk tb: page.getTextLines()) {
-                        for (TextChunk.TextLine tl: tb.getWords()){
-                            if (cell.intersects(tl.getBbox())){
-                                JSONObject cellBlock = new JSONObject();
-                                cellBlock.put("x_top_left", (int)tl.getBbox().getLeft());
-                                cellBlock.put("y_top_left", (int)tl.getBbox().getTop());
-                                cellBlock.put("width", (int)tl.getBbox().getWidth());
-                                cellBlock.put("height", (int)tl.getBbox().getHeight());
-                                cellBlock.put("start", start);
-                                int len = tl.getText().length();
-                                cellBlock.put("end", start + len);
-                                start = start + len + 1;
-                                cellBlocks.put(cellBlock);
-
-                            }
-                        }
+                    for (TextChunk.TextLine tl: cell.getTextLineWords()) {
+                        JSONObject cellBlock = new JSONObject();
+                        cellBlock.put("x_top_left", (int)tl.getLeft());
+                        cellBlock.put("y_top_left", (int)tl.getTop());
+                        cellBlock.put("width", (int)tl.getWidth());
+                        cellBlock.put("height", (int)tl.getHeight());
+                        cellBlock.put("start", start);
+                        int len = tl.getText().length();
+                        cellBlock.put("end", start + len);
+                        start = start + len + 1;
+                        cellBlocks.put(cellBlock);
                     }
 
                     cellText.put("cell_blocks", cellBlocks);
@@ -0,0 +1,72 @@
+package extractors;
+
+import model.Document;
+import model.Page;
+import model.TextChunk;
+import org.apache.commons.collections4.IteratorUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class WordCoherenceTest {
+
+    private static Document loadSample() throws IOException {
+        Document document = Document.load(Paths.get("./data/prospectus_part.pdf"), 0, Integer.MAX_VALUE);
+        Assertions.assertNotNull(document);
+        return document;
+    }
+
+    @Test
+    public void testSamplePdfCoherence() throws IOException {
+        Document document = loadSample();
+
+        for (Page page: document.getPages()) {
+            assertSameCoherence(IteratorUtils.toList(page.getWords()));
+        }
+    }
+
+    @Test
+    public void testRandomWordsCoherence() throws IOException {
+        Page page = loadSample().getPage(0);
+        Random random = new Random(635);
+
+        for (int n = 0; n < 200; n++) {
+            List<TextChunk> words = new ArrayList<>();
+            int count = 1 + random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                // Few distinct positions, so the lefts align and the words overlap and touch often
+                double left = random.nextInt(20) * 0.5;
+                double top = random.nextInt(40) * 0.5;
+                double right = left + random.nextInt(12);
+                double bottom = top + random.nextInt(4);
+                if (n % 10 == 0 && i == count / 2) {
+                    // Undefined and negative heights are left to the brute force
+                    bottom = n % 20 == 0 ? Double.NaN : top - 1;
+                }
+                words.add(new TextChunk(left, top, right, bottom, "w" + i, page));
+            }
+            assertSameCoherence(words);
+        }
+    }
+
+    private static void assertSameCoherence(List<TextChunk> words) {
+        words.forEach(word -> word.setCoherence(-1));
+        WordCoherence.determineByBruteForce(words);
+        int[] expected = new int[words.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = words.get(i).getCoherence();
+        }
+
+        words.forEach(word -> word.setCoherence(-1));
+        WordCoherence.determine(words);
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(expected[i], words.get(i).getCoherence(), words.get(i).getText());
+        }
+    }
+}
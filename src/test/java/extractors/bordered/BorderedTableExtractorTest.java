@@ -0,0 +1,199 @@
+package extractors.bordered;
+
+import model.PDFRectangle;
+import model.Ruling;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.Utils;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class BorderedTableExtractorTest {
+
+    // Few positions, among them both zeros and positions apart by less than a hundredth or rounding to a half
+    private static final float[] POSITIONS = {-0.0f, 0.0f, 12.5f, 12.504f, 25.005f, 25.0f, 40.0f, 55.5f, 70.0f, 90.0f};
+
+    @Test
+    public void testRandomGridsCells() {
+        Random random = new Random(635);
+
+        for (int n = 0; n < 500; n++) {
+            List<Ruling> horizontals = new ArrayList<>();
+            List<Ruling> verticals = new ArrayList<>();
+            int count = 1 + random.nextInt(12);
+            for (int i = 0; i < count; i++) {
+                horizontals.add(randomRuling(random, false));
+                verticals.add(randomRuling(random, true));
+            }
+            Map<Point2D, Ruling[]> intersectionPoints = Ruling.findIntersections(horizontals, verticals);
+            if (n % 2 == 0) {
+                // A partial grid, missing some of its corners
+                for (Iterator<Point2D> iterator = intersectionPoints.keySet().iterator(); iterator.hasNext(); ) {
+                    iterator.next();
+                    if (random.nextInt(5) == 0) {
+                        iterator.remove();
+                    }
+                }
+            }
+
+            List<PDFRectangle> expected = findCellsByScanning(intersectionPoints);
+            List<PDFRectangle> actual = BorderedTableExtractor.findCells(intersectionPoints);
+            Assertions.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameRectangle(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testRandomCellsMerge() {
+        Random random = new Random(635);
+
+        for (int n = 0; n < 500; n++) {
+            List<PDFRectangle> cells = new ArrayList<>();
+            int count = random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                // Cells of no width or height and cells touching others are left unmerged
+                double left = POSITIONS[random.nextInt(POSITIONS.length)];
+                double top = POSITIONS[random.nextInt(POSITIONS.length)];
+                double right = left + random.nextInt(4) * 12.5;
+                double bottom = top + random.nextInt(4) * 12.5;
+                cells.add(new PDFRectangle(left, top, right, bottom));
+            }
+            List<PDFRectangle> copies = new ArrayList<>();
+            Map<PDFRectangle, PDFRectangle> copiesOf = new IdentityHashMap<>();
+            for (PDFRectangle cell: cells) {
+                PDFRectangle copy = (PDFRectangle) cell.clone();
+                copies.add(copy);
+                copiesOf.put(cell, copy);
+            }
+
+            List<PDFRectangle> expected = mergeByScanning(copies);
+            List<PDFRectangle> actual = CellMerger.merge(cells);
+            Assertions.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assertions.assertSame(expected.get(i), copiesOf.get(actual.get(i)));
+                assertSameRectangle(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    private static Ruling randomRuling(Random random, boolean vertical) {
+        float position = POSITIONS[random.nextInt(POSITIONS.length)];
+        float start = POSITIONS[random.nextInt(POSITIONS.length)];
+        float end = POSITIONS[random.nextInt(POSITIONS.length)];
+        if (start > end) {
+            float swap = start;
+            start = end;
+            end = swap;
+        }
+        end += 1;
+        return vertical ? new Ruling(position, start, position, end) : new Ruling(start, position, end, position);
+    }
+
+    private static void assertSameRectangle(PDFRectangle expected, PDFRectangle actual) {
+        Assertions.assertEquals(expected.getX(), actual.getX());
+        Assertions.assertEquals(expected.getY(), actual.getY());
+        Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+        Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+    }
+
+    // The search of cells and the merge of table cells before the intersection points and the cells were indexed
+
+    private static final Comparator<Point2D> POINT_COMPARATOR = new Comparator<Point2D>() {
+        @Override
+        public int compare(Point2D arg0, Point2D arg1) {
+            int result = 0;
+            float arg0X = Utils.round(arg0.getX(), 2);
+            float arg0Y = Utils.round(arg0.getY(), 2);
+            float arg1X = Utils.round(arg1.getX(), 2);
+            float arg1Y = Utils.round(arg1.getY(), 2);
+
+            if (arg0Y > arg1Y) {
+                result = 1;
+            } else if (arg0Y < arg1Y) {
+                result = -1;
+            } else if (arg0X > arg1X) {
+                result = 1;
+            } else if (arg0X < arg1X) {
+                result = -1;
+            }
+            return result;
+        }
+    };
+
+    private static List<PDFRectangle> findCellsByScanning(Map<Point2D, Ruling[]> intersectionPoints) {
+        List<PDFRectangle> cellsFound = new ArrayList<>();
+        List<Point2D> intersectionPointsList = new ArrayList<>(intersectionPoints.keySet());
+        Collections.sort(intersectionPointsList, POINT_COMPARATOR);
+        boolean doBreak = false;
+
+        for (int i = 0; i < intersectionPointsList.size(); i++) {
+            Point2D.Float topLeft = (Point2D.Float) intersectionPointsList.get(i);
+            Ruling[] hv = intersectionPoints.get(topLeft);
+            doBreak = false;
+
+            List<Point2D> xPoints = new ArrayList<>();
+            List<Point2D> yPoints = new ArrayList<>();
+
+            for (Point2D p : intersectionPointsList.subList(i, intersectionPointsList.size())) {
+                if (p.getX() == topLeft.getX() && p.getY() > topLeft.getY()) {
+                    xPoints.add(p);
+                }
+                if (p.getY() == topLeft.getY() && p.getX() > topLeft.getX()) {
+                    yPoints.add(p);
+                }
+            }
+            outer:
+            for (Point2D xPoint : xPoints) {
+                if (doBreak) {
+                    break;
+                }
+
+                if (!hv[1].equals(intersectionPoints.get(xPoint)[1])) {
+                    continue;
+                }
+                for (Point2D yPoint : yPoints) {
+                    if (!hv[0].equals(intersectionPoints.get(yPoint)[0])) {
+                        continue;
+                    }
+                    Point2D.Float btmRight = new Point2D.Float((float) yPoint.getX(), (float) xPoint.getY());
+                    if (intersectionPoints.containsKey(btmRight)
+                            && intersectionPoints.get(btmRight)[0].equals(intersectionPoints.get(xPoint)[0])
+                            && intersectionPoints.get(btmRight)[1].equals(intersectionPoints.get(yPoint)[1])) {
+                        cellsFound.add(new PDFRectangle(topLeft, btmRight));
+                        doBreak = true;
+                        break outer;
+                    }
+                }
+            }
+        }
+        return cellsFound;
+    }
+
+    private static List<PDFRectangle> mergeByScanning(List<PDFRectangle> tableCells) {
+        List<PDFRectangle> filteredTableCells = new ArrayList<>();
+
+        for (PDFRectangle c: tableCells) {
+            boolean isIntersected = false;
+            for (PDFRectangle c1: filteredTableCells) {
+                if (c1.intersects(c)) {
+                    c1.add(c);
+                    isIntersected = true;
+                }
+            }
+            if (!isIntersected)
+                filteredTableCells.add(c);
+        }
+        return filteredTableCells;
+    }
+}
@@ -0,0 +1,286 @@
+package model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class RulingSetTest {
+
+    private static final float EPSILON = 0.01f;
+
+    @Test
+    public void testRandomRulingsCollapse() {
+        Random random = new Random(635);
+
+        for (int n = 0; n < 500; n++) {
+            boolean vertical = random.nextBoolean();
+            int expandAmount = random.nextInt(3) * 5;
+            List<Ruling> rulings = new ArrayList<>();
+            int count = 1 + random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                float position = randomCoordinate(random, 6);
+                float start = randomCoordinate(random, 40);
+                float end = start + random.nextInt(8) * 2.5f;
+                if (random.nextInt(4) == 0) {
+                    // Flipped rulings join with the others the other way round
+                    float swap = start;
+                    start = end;
+                    end = swap;
+                }
+                rulings.add(vertical ? new Ruling(position, start, position, end)
+                        : new Ruling(start, position, end, position));
+            }
+            assertSameCollapse(rulings, expandAmount);
+        }
+    }
+
+    @Test
+    public void testRandomRulingsSnap() {
+        Random random = new Random(635);
+
+        for (int n = 0; n < 500; n++) {
+            float xThreshold = random.nextInt(5) * 2f;
+            float yThreshold = random.nextInt(5) * 2f;
+            List<Ruling> rulings = new ArrayList<>();
+            int count = 1 + random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                float x = randomCoordinate(random, 30);
+                float y = randomCoordinate(random, 30);
+                float length = random.nextInt(6) * 3f;
+                rulings.add(random.nextBoolean() ? new Ruling(x, y, x, y + length) : new Ruling(x, y, x + length, y));
+            }
+            assertSameSnap(rulings, xThreshold, yThreshold);
+        }
+    }
+
+    /**
+     * Returns one of few coordinates, so rulings share positions and ends often, sometimes moved by less than
+     * the tolerance of equal positions or negative zero.
+     */
+    private static float randomCoordinate(Random random, int count) {
+        float value = random.nextInt(count) * 1.5f;
+        switch (random.nextInt(8)) {
+            case 0:
+                return value + 0.004f;
+            case 1:
+                return value == 0 ? -0.0f : value;
+            default:
+                return value;
+        }
+    }
+
+    private static void assertSameCollapse(List<Ruling> rulings, int expandAmount) {
+        List<Line2D.Float> lines = copy(rulings);
+        Map<Ruling, Line2D.Float> linesOf = new IdentityHashMap<>();
+        for (int i = 0; i < rulings.size(); i++) {
+            linesOf.put(rulings.get(i), lines.get(i));
+        }
+
+        List<Line2D.Float> expected = collapseOrientedLines(lines, expandAmount);
+        List<Ruling> actual = RulingSet.collapse(rulings, expandAmount);
+
+        // Both sort their input in place
+        assertSameLines(lines, rulings, linesOf);
+        assertSameLines(expected, actual, linesOf);
+    }
+
+    private static void assertSameSnap(List<Ruling> rulings, float xThreshold, float yThreshold) {
+        List<Line2D.Float> lines = copy(rulings);
+
+        snapLinePoints(lines, xThreshold, yThreshold);
+        new RulingSet(rulings).snapPoints(xThreshold, yThreshold);
+
+        for (int i = 0; i < rulings.size(); i++) {
+            assertSameLine(lines.get(i), rulings.get(i));
+        }
+    }
+
+    private static List<Line2D.Float> copy(List<Ruling> rulings) {
+        List<Line2D.Float> lines = new ArrayList<>();
+        for (Ruling ruling: rulings) {
+            lines.add(new Line2D.Float(ruling.x1, ruling.y1, ruling.x2, ruling.y2));
+        }
+        return lines;
+    }
+
+    private static void assertSameLines(List<Line2D.Float> expected, List<Ruling> actual,
+                                        Map<Ruling, Line2D.Float> linesOf) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertSame(expected.get(i), linesOf.get(actual.get(i)));
+            assertSameLine(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertSameLine(Line2D.Float expected, Ruling actual) {
+        Assertions.assertEquals(expected.x1, actual.x1);
+        Assertions.assertEquals(expected.y1, actual.y1);
+        Assertions.assertEquals(expected.x2, actual.x2);
+        Assertions.assertEquals(expected.y2, actual.y2);
+    }
+
+    // The collapse and snapping of Utils before RulingSet, on lines with the geometry Ruling had then
+
+    private static List<Line2D.Float> collapseOrientedLines(List<Line2D.Float> lines, int expandAmount) {
+        ArrayList<Line2D.Float> rv = new ArrayList<>();
+        Collections.sort(lines, (a, b) -> {
+            final float diff = getPosition(a) - getPosition(b);
+            return Float.compare(diff == 0 ? getStart(a) - getStart(b) : diff, 0f);
+        });
+
+        for (Line2D.Float nextLine : lines) {
+            Line2D.Float last = rv.isEmpty() ? null : rv.get(rv.size() - 1);
+            if (last != null && feq(getPosition(nextLine), getPosition(last))
+                    && nearlyIntersects(last, nextLine, expandAmount)) {
+                final float lastStart = getStart(last);
+                final float lastEnd = getEnd(last);
+
+                final boolean lastFlipped = lastStart > lastEnd;
+                final boolean nextFlipped = getStart(nextLine) > getEnd(nextLine);
+
+                boolean differentDirections = nextFlipped != lastFlipped;
+                float nextS = differentDirections ? getEnd(nextLine) : getStart(nextLine);
+                float nextE = differentDirections ? getStart(nextLine) : getEnd(nextLine);
+
+                final float newStart = lastFlipped ? Math.max(nextS, lastStart) : Math.min(nextS, lastStart);
+                final float newEnd = lastFlipped ? Math.min(nextE, lastEnd) : Math.max(nextE, lastEnd);
+                if (isVertical(last)) {
+                    last.setLine(last.x1, newStart, last.x2, newEnd);
+                } else if (isHorizontal(last)) {
+                    last.setLine(newStart, last.y1, newEnd, last.y2);
+                }
+            } else if (length(nextLine) == 0) {
+                continue;
+            } else {
+                rv.add(nextLine);
+            }
+        }
+        return rv;
+    }
+
+    private static void snapLinePoints(List<Line2D.Float> lines, float xThreshold, float yThreshold) {
+        Map<Line2D.Float, Point2D[]> linesToPoints = new HashMap<>();
+        List<Point2D> points = new ArrayList<>();
+        for (Line2D.Float line : lines) {
+            Point2D p1 = line.getP1();
+            Point2D p2 = line.getP2();
+            linesToPoints.put(line, new Point2D[]{p1, p2});
+            points.add(p1);
+            points.add(p2);
+        }
+
+        Collections.sort(points, (a, b) -> Double.compare(a.getX(), b.getX()));
+        for (List<Point2D> group : groupPoints(points, true, xThreshold)) {
+            float avgLoc = 0;
+            for (Point2D p : group) {
+                avgLoc += p.getX();
+            }
+            avgLoc /= group.size();
+            for (Point2D p : group) {
+                p.setLocation(avgLoc, p.getY());
+            }
+        }
+
+        Collections.sort(points, (a, b) -> Double.compare(a.getY(), b.getY()));
+        for (List<Point2D> group : groupPoints(points, false, yThreshold)) {
+            float avgLoc = 0;
+            for (Point2D p : group) {
+                avgLoc += p.getY();
+            }
+            avgLoc /= group.size();
+            for (Point2D p : group) {
+                p.setLocation(p.getX(), avgLoc);
+            }
+        }
+
+        for (Map.Entry<Line2D.Float, Point2D[]> ltp : linesToPoints.entrySet()) {
+            Point2D[] p = ltp.getValue();
+            ltp.getKey().setLine(p[0], p[1]);
+        }
+    }
+
+    /**
+     * Groups the sorted points except the last one, which stays in no group.
+     */
+    private static List<List<Point2D>> groupPoints(List<Point2D> points, boolean byX, float threshold) {
+        List<List<Point2D>> groupedPoints = new ArrayList<>();
+        groupedPoints.add(new ArrayList<>(Arrays.asList(points.get(0))));
+        for (Point2D p : points.subList(1, points.size() - 1)) {
+            List<Point2D> last = groupedPoints.get(groupedPoints.size() - 1);
+            double distance = byX ? p.getX() - last.get(0).getX() : p.getY() - last.get(0).getY();
+            if (Math.abs(distance) < threshold) {
+                last.add(p);
+            } else {
+                groupedPoints.add(new ArrayList<>(Arrays.asList(p)));
+            }
+        }
+        return groupedPoints;
+    }
+
+    private static boolean nearlyIntersects(Line2D.Float line, Line2D.Float another, int expandAmount) {
+        if (line.intersectsLine(another)) {
+            return true;
+        }
+        if (isVertical(line) == isHorizontal(another)) {
+            return expand(line, Ruling.DISTANCE_TOLERANCE).intersectsLine(another);
+        }
+        return expand(line, expandAmount).intersectsLine(expand(another, expandAmount));
+    }
+
+    private static Line2D.Float expand(Line2D.Float line, float amount) {
+        Line2D.Float r = (Line2D.Float) line.clone();
+        // The end is set by the orientation of the line with the new start
+        float start = getStart(line) - amount;
+        if (isVertical(r)) {
+            r.setLine(r.x1, start, r.x2, r.y2);
+        } else if (isHorizontal(r)) {
+            r.setLine(start, r.y1, r.x2, r.y2);
+        }
+        float end = getEnd(line) + amount;
+        if (isVertical(r)) {
+            r.setLine(r.x1, r.y1, r.x2, end);
+        } else if (isHorizontal(r)) {
+            r.setLine(r.x1, r.y1, end, r.y2);
+        }
+        return r;
+    }
+
+    private static float getPosition(Line2D.Float line) {
+        return (float) (isVertical(line) ? line.getP1().getX() : line.getP2().getY());
+    }
+
+    private static float getStart(Line2D.Float line) {
+        return isVertical(line) ? line.y1 : line.x1;
+    }
+
+    private static float getEnd(Line2D.Float line) {
+        return isVertical(line) ? line.y2 : line.x2;
+    }
+
+    private static double length(Line2D.Float line) {
+        return Math.sqrt(Math.pow(line.x1 - line.x2, 2) + Math.pow(line.y1 - line.y2, 2));
+    }
+
+    private static boolean isVertical(Line2D.Float line) {
+        return length(line) > 0 && feq(line.getP1().getX(), line.getP2().getX());
+    }
+
+    private static boolean isHorizontal(Line2D.Float line) {
+        return length(line) > 0 && feq(line.getP1().getY(), line.getP2().getY());
+    }
+
+    private static boolean feq(double f1, double f2) {
+        return Math.abs(f1 - f2) < EPSILON;
+    }
+}